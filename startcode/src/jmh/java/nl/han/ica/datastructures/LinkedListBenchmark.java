@@ -0,0 +1,83 @@
+package nl.han.ica.datastructures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HANLinkedList compared with ArrayList and ArrayDeque. Every benchmark leaves the list at
+ * its original size, so the numbers hold for the given size for the whole measurement.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LinkedListBenchmark {
+    private static final Integer VALUE = 42;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private HANLinkedList<Integer> hanList;
+    private ArrayList<Integer> arrayList;
+    private ArrayDeque<Integer> arrayDeque;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        hanList = new HANLinkedList<>();
+        arrayList = new ArrayList<>(size + 1);
+        arrayDeque = new ArrayDeque<>(size + 1);
+        for (int i = 0; i < size; i++) {
+            hanList.addLast(i);
+            arrayList.add(i);
+            arrayDeque.addLast(i);
+        }
+    }
+
+    @Benchmark
+    public Integer hanAddFirst() {
+        hanList.addFirst(VALUE);
+        Integer first = hanList.getFirst();
+        hanList.removeFirst();
+        return first;
+    }
+
+    @Benchmark
+    public Integer arrayListAddFirst() {
+        arrayList.add(0, VALUE);
+        return arrayList.remove(0);
+    }
+
+    @Benchmark
+    public Integer arrayDequeAddFirst() {
+        arrayDeque.addFirst(VALUE);
+        return arrayDeque.removeFirst();
+    }
+
+    @Benchmark
+    public Integer hanGetMiddle() {
+        return hanList.get(size / 2);
+    }
+
+    @Benchmark
+    public Integer arrayListGetMiddle() {
+        return arrayList.get(size / 2);
+    }
+
+    @Benchmark
+    public int hanInsertDeleteMiddle() {
+        hanList.insert(size / 2, VALUE);
+        hanList.delete(size / 2);
+        return hanList.getSize();
+    }
+
+    @Benchmark
+    public Integer arrayListInsertDeleteMiddle() {
+        arrayList.add(size / 2, VALUE);
+        return arrayList.remove(size / 2);
+    }
+}
@@ -0,0 +1,66 @@
+package nl.han.ica.datastructures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HAN queues compared with ArrayDeque, on a queue that already holds size items.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class QueueBenchmark {
+    private static final Integer VALUE = 42;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private HANQueue<Integer> hanQueue;
+    private ConcurrentHANQueue<Integer> concurrentQueue;
+    private ArrayDeque<Integer> arrayDeque;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        hanQueue = new HANQueue<>();
+        concurrentQueue = new ConcurrentHANQueue<>();
+        arrayDeque = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            hanQueue.enqueue(i);
+            concurrentQueue.enqueue(i);
+            arrayDeque.addLast(i);
+        }
+    }
+
+    @Benchmark
+    public Integer hanQueueEnqueueDequeue() {
+        hanQueue.enqueue(VALUE);
+        return hanQueue.dequeue();
+    }
+
+    @Benchmark
+    public Integer concurrentQueueEnqueueDequeue() {
+        concurrentQueue.enqueue(VALUE);
+        return concurrentQueue.dequeue();
+    }
+
+    @Benchmark
+    public Integer arrayDequeEnqueueDequeue() {
+        arrayDeque.addLast(VALUE);
+        return arrayDeque.pollFirst();
+    }
+
+    @Benchmark
+    public Integer hanQueuePeek() {
+        return hanQueue.peek();
+    }
+
+    @Benchmark
+    public Integer arrayDequePeek() {
+        return arrayDeque.peekFirst();
+    }
+}
@@ -0,0 +1,85 @@
+package nl.han.ica.datastructures;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HAN stacks compared with ArrayDeque, on a stack that already holds size items.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StackBenchmark {
+    private static final Integer VALUE = 42;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    private HANStack<Integer> hanStack;
+    private HANArrayStack<Integer> hanArrayStack;
+    private ConcurrentHANStack<Integer> concurrentStack;
+    private ArrayDeque<Integer> arrayDeque;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        hanStack = new HANStack<>();
+        hanArrayStack = new HANArrayStack<>();
+        concurrentStack = new ConcurrentHANStack<>();
+        arrayDeque = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            hanStack.push(i);
+            hanArrayStack.push(i);
+            concurrentStack.push(i);
+            arrayDeque.push(i);
+        }
+    }
+
+    @Benchmark
+    public Integer hanStackPushPop() {
+        hanStack.push(VALUE);
+        return hanStack.pop();
+    }
+
+    @Benchmark
+    public Integer hanArrayStackPushPop() {
+        hanArrayStack.push(VALUE);
+        return hanArrayStack.pop();
+    }
+
+    @Benchmark
+    public Integer concurrentStackPushPop() {
+        concurrentStack.push(VALUE);
+        return concurrentStack.pop();
+    }
+
+    @Benchmark
+    public Integer arrayDequePushPop() {
+        arrayDeque.push(VALUE);
+        return arrayDeque.pop();
+    }
+
+    @Benchmark
+    public Integer hanStackPeek() {
+        return hanStack.peek();
+    }
+
+    @Benchmark
+    public Integer hanArrayStackPeek() {
+        return hanArrayStack.peek();
+    }
+
+    @Benchmark
+    public Integer concurrentStackPeek() {
+        return concurrentStack.peek();
+    }
+
+    @Benchmark
+    public Integer arrayDequePeek() {
+        return arrayDeque.peek();
+    }
+}
@@ -0,0 +1,62 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a stored AST with {@link AST#readFrom(InputStream)}, versus parsing its source again.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ASTCodecBenchmark {
+
+    @Param({"100", "2000"})
+    public int copies;
+
+    private String source;
+    private AST parsed;
+    private byte[] stored;
+    private ParseContext context;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        context = new ParseContext();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        parsed = context.parse(CharStreams.fromString(source), null);
+        parsed.writeTo(out);
+        stored = out.toByteArray();
+    }
+
+    @Benchmark
+    public AST parse() {
+        return context.parse(CharStreams.fromString(source), null);
+    }
+
+    @Benchmark
+    public AST readFrom() throws IOException {
+        return AST.readFrom(new ByteArrayInputStream(stored));
+    }
+
+    @Benchmark
+    public byte[] writeTo() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(stored.length);
+        parsed.writeTo(out);
+        return out.toByteArray();
+    }
+}
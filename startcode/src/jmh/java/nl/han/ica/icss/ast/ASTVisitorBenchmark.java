@@ -0,0 +1,153 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Determining the type of every expression in a large stylesheet with a chain of instanceof tests,
+ * as the checker used to, versus with an {@link ASTVisitor}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ASTVisitorBenchmark {
+
+    private final ASTVisitor<ExpressionType, Void> types = new ExpressionTypes();
+    private Expression[] expressions;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        AST ast = new ParseContext().parse(CharStreams.fromString((text + "\n").repeat(500)), null);
+        ArrayList<Expression> found = new ArrayList<>();
+        collect(ast.root, found);
+        expressions = found.toArray(new Expression[0]);
+    }
+
+    @Benchmark
+    public void instanceofChain(Blackhole blackhole) {
+        for (Expression expression : expressions) {
+            blackhole.consume(typeOf(expression));
+        }
+    }
+
+    @Benchmark
+    public void visitor(Blackhole blackhole) {
+        for (Expression expression : expressions) {
+            blackhole.consume(expression.accept(types, null));
+        }
+    }
+
+    private static void collect(ASTNode node, ArrayList<Expression> found) {
+        if (node instanceof Expression) {
+            found.add((Expression) node);
+        }
+        for (int i = 0, count = node.childCount(); i < count; i++) {
+            collect(node.childAt(i), found);
+        }
+    }
+
+    private static ExpressionType typeOf(Expression expression) {
+        if (expression instanceof PixelLiteral) {
+            return ExpressionType.PIXEL;
+        } else if (expression instanceof ColorLiteral) {
+            return ExpressionType.COLOR;
+        } else if (expression instanceof BoolLiteral) {
+            return ExpressionType.BOOL;
+        } else if (expression instanceof PercentageLiteral) {
+            return ExpressionType.PERCENTAGE;
+        } else if (expression instanceof ScalarLiteral) {
+            return ExpressionType.SCALAR;
+        } else if (expression instanceof VariableReference) {
+            return ExpressionType.UNDEFINED;
+        } else if (expression instanceof Operation) {
+            Operation operation = (Operation) expression;
+            ExpressionType lhsType = typeOf(operation.lhs);
+            ExpressionType rhsType = typeOf(operation.rhs);
+            if (operation instanceof MultiplyOperation) {
+                return lhsType == ExpressionType.SCALAR ? rhsType : lhsType;
+            } else if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
+                return lhsType == rhsType ? lhsType : ExpressionType.UNDEFINED;
+            }
+        }
+        return ExpressionType.UNDEFINED;
+    }
+
+    private static class ExpressionTypes implements ASTVisitor<ExpressionType, Void> {
+
+        @Override
+        public ExpressionType visitNode(ASTNode node, Void context) {
+            return ExpressionType.UNDEFINED;
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node, Void context) {
+            return ExpressionType.PIXEL;
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node, Void context) {
+            return ExpressionType.COLOR;
+        }
+
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node, Void context) {
+            return ExpressionType.BOOL;
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node, Void context) {
+            return ExpressionType.PERCENTAGE;
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral node, Void context) {
+            return ExpressionType.SCALAR;
+        }
+
+        @Override
+        public ExpressionType visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            ExpressionType lhsType = operation.lhs.accept(this, null);
+            ExpressionType rhsType = operation.rhs.accept(this, null);
+            return lhsType == ExpressionType.SCALAR ? rhsType : lhsType;
+        }
+
+        @Override
+        public ExpressionType visitAddOperation(AddOperation operation, Void context) {
+            return sameType(operation);
+        }
+
+        @Override
+        public ExpressionType visitSubtractOperation(SubtractOperation operation, Void context) {
+            return sameType(operation);
+        }
+
+        private ExpressionType sameType(Operation operation) {
+            ExpressionType lhsType = operation.lhs.accept(this, null);
+            ExpressionType rhsType = operation.rhs.accept(this, null);
+            return lhsType == rhsType ? lhsType : ExpressionType.UNDEFINED;
+        }
+    }
+}
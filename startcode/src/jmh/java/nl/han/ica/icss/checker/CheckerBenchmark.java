@@ -0,0 +1,42 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a variable assigned a sum of many terms, used in a declaration. Each operand is typed
+ * once, so the time should grow linearly with the number of terms.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CheckerBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int terms;
+
+    private AST ast;
+
+    @Setup(Level.Trial)
+    public void load() {
+        StringBuilder source = new StringBuilder("Sum := 1px");
+        for (int i = 1; i < terms; i++) {
+            source.append(" + ").append(i % 7).append("px");
+        }
+        source.append(";\np {\n\twidth: Sum + 1px;\n}\n");
+        ast = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+    }
+
+    @Benchmark
+    public AST checkLongSum() {
+        new Checker().check(ast);
+        return ast;
+    }
+}
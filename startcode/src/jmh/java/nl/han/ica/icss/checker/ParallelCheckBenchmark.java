@@ -0,0 +1,50 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checking a large stylesheet sequentially, versus checking its style rules in parallel
+ * on the common pool.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallelCheckBenchmark {
+
+    @Param({"100", "2000"})
+    public int copies;
+
+    private AST ast;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        ast = new ParseContext().parse(CharStreams.fromString((text + "\n").repeat(copies)), null);
+    }
+
+    @Benchmark
+    public AST sequential() {
+        new Checker().check(ast);
+        return ast;
+    }
+
+    @Benchmark
+    public AST parallel() {
+        new Checker().checkParallel(ast, ForkJoinPool.commonPool());
+        return ast;
+    }
+}
@@ -0,0 +1,57 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applying a one-character edit in the middle of a large stylesheet incrementally, versus
+ * parsing the edited text again from scratch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class IncrementalParseBenchmark {
+
+    @Param({"100", "2000"})
+    public int copies;
+
+    private String source;
+    private int offset;
+    private IncrementalParser incremental;
+    private ParseContext full;
+    private boolean toggle;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        offset = source.indexOf("20px", source.length() / 2);
+        incremental = new IncrementalParser();
+        incremental.parse(source);
+        full = new ParseContext();
+    }
+
+    @Benchmark
+    public AST incrementalEdit() {
+        toggle = !toggle;
+        return incremental.edit(offset, 1, toggle ? "3" : "2");
+    }
+
+    @Benchmark
+    public AST fullReparse() {
+        toggle = !toggle;
+        String edited = source.substring(0, offset) + (toggle ? "3" : "2") + source.substring(offset + 1);
+        return full.parse(CharStreams.fromString(edited), null);
+    }
+}
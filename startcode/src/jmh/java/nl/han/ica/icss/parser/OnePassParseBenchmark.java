@@ -0,0 +1,54 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the parse tree and walking it versus building the AST while parsing, on the
+ * example stylesheets repeated copies times. Run with the gc profiler to compare allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OnePassParseBenchmark {
+
+    @Param({"level1.icss", "level3.icss"})
+    public String resource;
+
+    @Param({"100", "10000"})
+    public int copies;
+
+    private String source;
+    private ParseContext parseTree;
+    private ParseContext onePass;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        parseTree = new ParseContext();
+        parseTree.setBuildParseTree(true);
+        onePass = new ParseContext();
+    }
+
+    @Benchmark
+    public AST parseTree() {
+        return parseTree.parse(CharStreams.fromString(source), null);
+    }
+
+    @Benchmark
+    public AST onePass() {
+        return onePass.parse(CharStreams.fromString(source), null);
+    }
+}
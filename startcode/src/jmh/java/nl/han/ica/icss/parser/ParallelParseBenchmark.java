@@ -0,0 +1,50 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential versus parallel parsing of level3 repeated copies times, on the common pool.
+ * The speedup depends on the number of cores, run with -Djava.util.concurrent.ForkJoinPool.common.parallelism
+ * to try other pool sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParallelParseBenchmark {
+
+    @Param({"10000"})
+    public int copies;
+
+    private String source;
+    private ParseContext sequential;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        sequential = new ParseContext();
+    }
+
+    @Benchmark
+    public AST sequential() {
+        return sequential.parse(CharStreams.fromString(source), null);
+    }
+
+    @Benchmark
+    public AST parallel() {
+        return ParseContext.parseParallel(source, null, ForkJoinPool.commonPool());
+    }
+}
@@ -0,0 +1,55 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call latency of parsing one small stylesheet: building a fresh lexer, token stream,
+ * parser and walker for every call versus resetting the thread's {@link ParseContext}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParseContextBenchmark {
+
+    @Param({"level0.icss", "level3.icss"})
+    public String resource;
+
+    private String source;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            source = CharStreams.fromStream(in).toString();
+        }
+        ParseContext.warmUp();
+    }
+
+    @Benchmark
+    public AST freshParser() {
+        ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(source));
+        lexer.removeErrorListeners();
+        ICSSParser parser = new ICSSParser(new CommonTokenStream(lexer));
+        parser.removeErrorListeners();
+        ParseTree parseTree = parser.stylesheet();
+        ASTListener listener = new ASTListener();
+        new ParseTreeWalker().walk(listener, parseTree);
+        return listener.getAST();
+    }
+
+    @Benchmark
+    public AST reusedContext() {
+        return ParseContext.forCurrentThread().parse(CharStreams.fromString(source), null);
+    }
+}
@@ -0,0 +1,53 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ANTLR parser (two-stage, one pass) versus the hand-written recursive-descent parser,
+ * on the example stylesheets repeated copies times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ParserEngineBenchmark {
+
+    @Param({"level0.icss", "level3.icss"})
+    public String resource;
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private String source;
+    private ParseContext antlr;
+    private RecursiveDescentParser recursiveDescent;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        antlr = new ParseContext();
+        recursiveDescent = new RecursiveDescentParser();
+    }
+
+    @Benchmark
+    public AST antlr() {
+        return antlr.parse(CharStreams.fromString(source), null);
+    }
+
+    @Benchmark
+    public AST recursiveDescent() {
+        return recursiveDescent.parse(source, null);
+    }
+}
@@ -0,0 +1,54 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full LL prediction versus the SLL-first two-stage parse, on the example stylesheets
+ * repeated copies times.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TwoStageParseBenchmark {
+
+    @Param({"level0.icss", "level1.icss", "level2.icss", "level3.icss"})
+    public String resource;
+
+    @Param({"100"})
+    public int copies;
+
+    private String source;
+    private ParseContext llOnly;
+    private ParseContext twoStage;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        String text;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resource)) {
+            text = CharStreams.fromStream(in).toString();
+        }
+        source = (text + "\n").repeat(copies);
+        llOnly = new ParseContext();
+        llOnly.setTwoStage(false);
+        twoStage = new ParseContext();
+    }
+
+    @Benchmark
+    public AST llOnly() {
+        return llOnly.parse(CharStreams.fromString(source), null);
+    }
+
+    @Benchmark
+    public AST twoStage() {
+        return twoStage.parse(CharStreams.fromString(source), null);
+    }
+}
@@ -25,7 +25,6 @@ CLASS_IDENT: '.' [a-z0-9\-]+;
 
 //General identifiers
 LOWER_IDENT: [a-z] [a-z0-9\-]*;
-CAPITAL_IDENT: [A-Z] [A-Za-z0-9_]*;
 
 //All whitespace is skipped
 WS: [ \t\r\n]+ -> skip;
@@ -50,15 +49,14 @@ variableAssignment: variable ASSIGNMENT_OPERATOR expression SEMICOLON;
 // Selectors
 selector: ID_IDENT #idSelector | CLASS_IDENT #classSelector | LOWER_IDENT #tagSelector;
 
-// Declarations
-declaration: property COLON (expression | variable) SEMICOLON;
+// Declarations (a variable is an expression already)
+declaration: property COLON expression SEMICOLON;
 property: LOWER_IDENT;
 
-// Expressions
+// Expressions, + and - have the same precedence and are left-associative
 expression:
   expression MUL expression #multiplyExpression
-  | expression PLUS expression #addExpression
-  | expression MIN expression #subtractExpression
+  | expression op=(PLUS | MIN) expression #addOrSubtractExpression
   | value #valueExpression
   | variable #variableExpression;
 
@@ -0,0 +1,116 @@
+package nl.han.ica.datastructures;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free unbounded queue after Michael and Scott. The queue always contains a dummy
+ * node; enqueue links a node after the tail with a CAS and dequeue advances the head.
+ * Threads that find the tail lagging behind help to swing it forward, so no thread
+ * ever waits on another.
+ */
+public class ConcurrentHANQueue<T> implements IHANQueue<T> {
+    private final AtomicReference<Node<T>> head;
+    private final AtomicReference<Node<T>> tail;
+    private final LongAdder size = new LongAdder();
+
+    public ConcurrentHANQueue() {
+        Node<T> dummy = new Node<>(null);
+        head = new AtomicReference<>(dummy);
+        tail = new AtomicReference<>(dummy);
+    }
+
+    @Override
+    public void clear() {
+        while (dequeue() != null) {
+            // Drain, each dequeue drops one reference
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.get().next.get() == null;
+    }
+
+    @Override
+    public void enqueue(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("ConcurrentHANQueue does not accept null values");
+        }
+        Node<T> node = new Node<>(value);
+        while (true) {
+            Node<T> last = tail.get();
+            Node<T> next = last.next.get();
+            if (last != tail.get()) {
+                continue;
+            }
+            if (next == null) {
+                if (last.next.compareAndSet(null, node)) {
+                    tail.compareAndSet(last, node);
+                    size.increment();
+                    return;
+                }
+            } else {
+                tail.compareAndSet(last, next); // Help a slow enqueuer
+            }
+        }
+    }
+
+    @Override
+    public T dequeue() {
+        while (true) {
+            Node<T> first = head.get();
+            Node<T> last = tail.get();
+            Node<T> next = first.next.get();
+            if (first != head.get()) {
+                continue;
+            }
+            if (next == null) {
+                return null;
+            }
+            if (first == last) {
+                tail.compareAndSet(last, next); // Help a slow enqueuer
+                continue;
+            }
+            T value = next.value;
+            if (head.compareAndSet(first, next)) {
+                next.value = null; // next becomes the dummy, let the value be collected
+                size.decrement();
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public T peek() {
+        while (true) {
+            Node<T> first = head.get();
+            Node<T> next = first.next.get();
+            if (next == null) {
+                return null;
+            }
+            T value = next.value;
+            if (first == head.get()) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Size of queue. While other threads enqueue or dequeue this is an estimate.
+     * @return the number of items in queue
+     */
+    @Override
+    public int getSize() {
+        return (int) Math.max(0, size.sum());
+    }
+
+    private static final class Node<T> {
+        volatile T value;
+        final AtomicReference<Node<T>> next = new AtomicReference<>();
+
+        Node(T value) {
+            this.value = value;
+        }
+    }
+}
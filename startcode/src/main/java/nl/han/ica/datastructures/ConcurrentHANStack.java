@@ -0,0 +1,52 @@
+package nl.han.ica.datastructures;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free stack (Treiber stack). Push and pop swap the top node with a single CAS,
+ * so any number of threads can share the stack without a lock. Null values are rejected,
+ * because pop and peek return null for an empty stack.
+ */
+public class ConcurrentHANStack<T> implements IHANStack<T> {
+    private final AtomicReference<ListNode<T>> top = new AtomicReference<>();
+
+    @Override
+    public void push(T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("ConcurrentHANStack does not accept null values");
+        }
+        ListNode<T> node = new ListNode<>(value);
+        ListNode<T> current;
+        do {
+            current = top.get();
+            node.next = current;
+        } while (!top.compareAndSet(current, node));
+    }
+
+    @Override
+    public T pop() {
+        ListNode<T> current;
+        do {
+            current = top.get();
+            if (current == null) {
+                return null;
+            }
+            // Nodes are never reused, so comparing references cannot suffer from ABA
+        } while (!top.compareAndSet(current, current.next));
+        return current.element;
+    }
+
+    @Override
+    public T peek() {
+        ListNode<T> current = top.get();
+        return current == null ? null : current.element;
+    }
+
+    /**
+     * Checks whether the stack is empty or not. Other threads may change this right after.
+     * @return true when empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return top.get() == null;
+    }
+}
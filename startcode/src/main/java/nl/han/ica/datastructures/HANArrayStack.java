@@ -0,0 +1,70 @@
+package nl.han.ica.datastructures;
+
+import java.util.Arrays;
+
+/**
+ * Stack backed by a growable array. Push, pop and peek are amortized O(1) and
+ * pushing does not allocate a node per element, unlike {@link HANStack}.
+ */
+public class HANArrayStack<T> implements IHANStack<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] elements;
+    private int top;
+
+    public HANArrayStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public HANArrayStack(int initialCapacity) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        this.elements = new Object[initialCapacity];
+        this.top = 0;
+    }
+
+    @Override
+    public void push(T value) {
+        if (top == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        }
+        elements[top++] = value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T pop() {
+        if (top == 0) {
+            return null;
+        }
+        T value = (T) elements[--top];
+        elements[top] = null; // Drop the reference so popped nodes can be collected
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if (top == 0) {
+            return null;
+        }
+        return (T) elements[top - 1];
+    }
+
+    /**
+     * Number of items on the stack
+     * @return the number of items on the stack
+     */
+    public int getSize() {
+        return top;
+    }
+
+    /**
+     * Checks whether the stack is empty or not
+     * @return true when empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return top == 0;
+    }
+}
@@ -1,41 +1,69 @@
 package nl.han.ica.datastructures;
 
-public class HANLinkedList<T> implements IHANLinkedList {
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+public class HANLinkedList<T> implements IHANLinkedList<T> {
     private ListNode<T> headerNode;
+    private ListNode<T> tailNode;
     private int size;
 
     public HANLinkedList(){
         this.headerNode = null;
+        this.tailNode = null;
         size = 0;
     }
 
     @Override
-    public void addFirst(Object value) {
-        ListNode node = new ListNode(value);
+    public void addFirst(T value) {
+        ListNode<T> node = new ListNode<>(value);
         node.next = this.headerNode;
         this.headerNode = node;
+        if (this.tailNode == null){
+            this.tailNode = node;
+        }
+        this.size++;
+    }
+
+    @Override
+    public void addLast(T value) {
+        ListNode<T> node = new ListNode<>(value);
+        if (this.tailNode == null){
+            this.headerNode = node;
+        } else {
+            this.tailNode.next = node;
+        }
+        this.tailNode = node;
         this.size++;
     }
 
     @Override
     public void clear() {
         this.headerNode = null;
+        this.tailNode = null;
         this.size = 0;
     }
 
     @Override
-    public void insert(int index, Object value) {
+    public void insert(int index, T value) {
         if (index < 0 || index > this.size){
             System.out.println("index out of bounds");
+            return;
         }
 
-        ListNode node = new ListNode(value);
         if (index == 0){
             addFirst(value);
             return;
         }
+        if (index == this.size){
+            addLast(value);
+            return;
+        }
 
-        ListNode current = this.headerNode;
+        ListNode<T> node = new ListNode<>(value);
+        ListNode<T> current = this.headerNode;
         for (int i = 1; i < index; i++){
             current = current.next;
         }
@@ -48,29 +76,36 @@ public class HANLinkedList<T> implements IHANLinkedList {
     public void delete(int pos) {
         if (pos < 0 || pos >= this.size){
             System.out.println("Exceeded the size of the list");
+            return;
         }
         if (pos == 0){
             removeFirst();
             return;
         }
 
-        ListNode current = this.headerNode;
-        ListNode prevNode = null;
+        ListNode<T> current = this.headerNode;
+        ListNode<T> prevNode = null;
         for (int i = 0; i < pos; i++){
             prevNode = current;
             current = current.next;
         }
         prevNode.next = current.next;
+        if (current == this.tailNode){
+            this.tailNode = prevNode;
+        }
         this.size--;
     }
 
     @Override
-    public Object get(int pos) {
+    public T get(int pos) {
        if (pos < 0 || pos >= this.size){
            System.out.println("List is empty");
            return null;
        };
-       ListNode node = this.headerNode;
+       if (pos == this.size - 1){
+           return tailNode.element;
+       }
+       ListNode<T> node = this.headerNode;
        for(int i = 0; i < pos; i++){
            node = node.next;
        }
@@ -84,11 +119,14 @@ public class HANLinkedList<T> implements IHANLinkedList {
             return;
         }
         this.headerNode = this.headerNode.next;
+        if (this.headerNode == null){
+            this.tailNode = null;
+        }
         this.size--;
     }
 
     @Override
-    public Object getFirst() {
+    public T getFirst() {
         if (this.headerNode == null){
             System.out.println("List is empty");
             return null;
@@ -100,4 +138,38 @@ public class HANLinkedList<T> implements IHANLinkedList {
     public int getSize() {
         return size;
     }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new NodeIterator<>(headerNode);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        // SIZED and SUBSIZED let parallel streams split the list into balanced batches
+        return Spliterators.spliterator(iterator(), size, Spliterator.ORDERED);
+    }
+
+    private static class NodeIterator<T> implements Iterator<T> {
+        private ListNode<T> next;
+
+        NodeIterator(ListNode<T> first) {
+            this.next = first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public T next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            T element = next.element;
+            next = next.next;
+            return element;
+        }
+    }
 }
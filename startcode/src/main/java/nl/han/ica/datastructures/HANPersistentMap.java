@@ -0,0 +1,195 @@
+package nl.han.ica.datastructures;
+
+import java.util.Objects;
+
+/**
+ * Immutable hash array mapped trie (HAMT). Every update returns a new map that shares
+ * all untouched nodes with the old one, so updates cost O(log32 n) and keeping an old
+ * version around (a snapshot) is free. Instances can be shared between threads.
+ */
+public final class HANPersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    private static final HANPersistentMap<?, ?> EMPTY = new HANPersistentMap<>(new Node(0, new Object[0]), 0);
+
+    private final Node root;
+    private final int size;
+
+    private HANPersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns the empty map
+     * @return map without any entries
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> HANPersistentMap<K, V> empty() {
+        return (HANPersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Looks up the value bound to key
+     * @param key key to look up
+     * @return the value, or null when the key is not in the map
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Leaf leaf = find(key);
+        return leaf == null ? null : (V) leaf.value;
+    }
+
+    /**
+     * Checks whether the key is in the map
+     * @param key key to look up
+     * @return true when present, false otherwise
+     */
+    public boolean containsKey(K key) {
+        return find(key) != null;
+    }
+
+    /**
+     * Returns a map with key bound to value. This map is not changed.
+     * @param key key to bind
+     * @param value value to bind to key
+     * @return the updated map
+     */
+    public HANPersistentMap<K, V> put(K key, V value) {
+        int hash = hash(key);
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(0, hash, key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new HANPersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Number of entries in the map
+     * @return the number of entries
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private Leaf find(K key) {
+        int hash = hash(key);
+        Node node = root;
+        int shift = 0;
+        while (true) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (slot instanceof Node) {
+                node = (Node) slot;
+                shift += BITS;
+            } else {
+                for (Leaf leaf = (Leaf) slot; leaf != null; leaf = leaf.next) {
+                    if (leaf.hash == hash && Objects.equals(leaf.key, key)) {
+                        return leaf;
+                    }
+                }
+                return null;
+            }
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    /*
+     * A slot holds either a sub node or a chain of leaves. Leaves in one chain share the
+     * same full hash; chains only grow beyond one leaf on real hash collisions.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int index = Integer.bitCount(bitmap & (bit - 1));
+
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, grown, 0, index);
+                grown[index] = new Leaf(hash, key, value, null);
+                System.arraycopy(slots, index, grown, index + 1, slots.length - index);
+                added[0] = true;
+                return new Node(bitmap | bit, grown);
+            }
+
+            Object slot = slots[index];
+            Object replacement;
+            if (slot instanceof Node) {
+                replacement = ((Node) slot).put(shift + BITS, hash, key, value, added);
+            } else {
+                Leaf leaf = (Leaf) slot;
+                if (leaf.hash == hash) {
+                    replacement = leaf.put(key, value, added);
+                } else {
+                    added[0] = true;
+                    replacement = merge(shift + BITS, leaf, new Leaf(hash, key, value, null));
+                }
+            }
+            if (replacement == slot) {
+                return this;
+            }
+            Object[] copy = slots.clone();
+            copy[index] = replacement;
+            return new Node(bitmap, copy);
+        }
+
+        private static Node merge(int shift, Leaf first, Leaf second) {
+            int firstIndex = (first.hash >>> shift) & MASK;
+            int secondIndex = (second.hash >>> shift) & MASK;
+            if (firstIndex == secondIndex) {
+                return new Node(1 << firstIndex, new Object[]{merge(shift + BITS, first, second)});
+            }
+            Object[] slots = firstIndex < secondIndex
+                    ? new Object[]{first, second}
+                    : new Object[]{second, first};
+            return new Node((1 << firstIndex) | (1 << secondIndex), slots);
+        }
+    }
+
+    private static final class Leaf {
+        final int hash;
+        final Object key;
+        final Object value;
+        final Leaf next;
+
+        Leaf(int hash, Object key, Object value, Leaf next) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+            this.next = next;
+        }
+
+        Leaf put(Object key, Object value, boolean[] added) {
+            if (Objects.equals(this.key, key)) {
+                return this.value == value ? this : new Leaf(hash, key, value, next);
+            }
+            if (next == null) {
+                added[0] = true;
+                return new Leaf(hash, this.key, this.value, new Leaf(hash, key, value, null));
+            }
+            Leaf rest = next.put(key, value, added);
+            return rest == next ? this : new Leaf(hash, this.key, this.value, rest);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package nl.han.ica.datastructures;
+
+/**
+ * Queue backed by a power-of-two ring buffer. Enqueue and dequeue are amortized O(1).
+ * An unbounded queue doubles its buffer when full, a bounded queue (see {@link #bounded(int)})
+ * rejects new values instead so callers get back-pressure.
+ */
+public class HANQueue<T> implements IHANQueue<T> {
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private Object[] elements;
+    private int mask;
+    private int head;
+    private int tail;
+    private final int bound;
+
+    public HANQueue() {
+        this(DEFAULT_CAPACITY, Integer.MAX_VALUE);
+    }
+
+    public HANQueue(int initialCapacity) {
+        this(initialCapacity, Integer.MAX_VALUE);
+    }
+
+    private HANQueue(int initialCapacity, int bound) {
+        if (initialCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        }
+        int capacity = roundUpToPowerOfTwo(initialCapacity);
+        this.elements = new Object[capacity];
+        this.mask = capacity - 1;
+        this.bound = bound;
+    }
+
+    /**
+     * Creates a queue that holds at most capacity items
+     * @param capacity maximum number of items in the queue
+     * @return an empty bounded queue
+     */
+    public static <T> HANQueue<T> bounded(int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be between 1 and " + MAX_CAPACITY + ": " + capacity);
+        }
+        return new HANQueue<>(capacity, capacity);
+    }
+
+    @Override
+    public void clear() {
+        // Null out the occupied slots so queued values can be garbage collected
+        for (int i = head; i != tail; i++) {
+            elements[i & mask] = null;
+        }
+        head = tail = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * Adds value T to the back of the queue
+     * @param value value to add
+     * @throws IllegalStateException when a bounded queue is full
+     */
+    @Override
+    public void enqueue(T value) {
+        if (!offer(value)) {
+            throw new IllegalStateException("Queue is full (capacity " + bound + ")");
+        }
+    }
+
+    /**
+     * Adds value T to the back of the queue unless a bounded queue is full
+     * @param value value to add
+     * @return true when added, false when the queue is full
+     */
+    public boolean offer(T value) {
+        int size = getSize();
+        if (size == bound) {
+            return false;
+        }
+        if (size == elements.length) {
+            grow();
+        }
+        elements[tail++ & mask] = value;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T dequeue() {
+        if (head == tail) {
+            return null;
+        }
+        int index = head++ & mask;
+        T value = (T) elements[index];
+        elements[index] = null;
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if (head == tail) {
+            return null;
+        }
+        return (T) elements[head & mask];
+    }
+
+    @Override
+    public int getSize() {
+        return tail - head;
+    }
+
+    /**
+     * Number of items the queue can hold, Integer.MAX_VALUE when unbounded
+     * @return maximum number of items
+     */
+    public int getCapacity() {
+        return bound;
+    }
+
+    private void grow() {
+        int size = getSize();
+        if (elements.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Queue cannot grow beyond " + MAX_CAPACITY + " items");
+        }
+        Object[] grown = new Object[elements.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = elements[(head + i) & mask];
+        }
+        elements = grown;
+        mask = grown.length - 1;
+        head = 0;
+        tail = size;
+    }
+
+    private static int roundUpToPowerOfTwo(int value) {
+        if (value > MAX_CAPACITY) {
+            return MAX_CAPACITY;
+        }
+        int highest = Integer.highestOneBit(value);
+        return highest == value ? value : highest << 1;
+    }
+}
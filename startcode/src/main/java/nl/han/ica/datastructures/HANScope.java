@@ -0,0 +1,90 @@
+package nl.han.ica.datastructures;
+
+/**
+ * Immutable chain of variable scopes. Each scope holds its own bindings in a
+ * {@link HANPersistentMap} and links to the scope it is nested in.
+ *
+ * Entering a scope, leaving it and taking a snapshot are O(1) and never copy bindings;
+ * defining a variable costs O(log n) in the size of the innermost scope. Because nothing
+ * is mutated, a snapshot of e.g. the global scope can be shared between threads.
+ */
+public final class HANScope<K, V> {
+    private final HANPersistentMap<K, V> bindings;
+    private final HANScope<K, V> parent;
+
+    public HANScope() {
+        this(HANPersistentMap.empty(), null);
+    }
+
+    private HANScope(HANPersistentMap<K, V> bindings, HANScope<K, V> parent) {
+        this.bindings = bindings;
+        this.parent = parent;
+    }
+
+    /**
+     * Opens a new, empty scope nested in this one
+     * @return the nested scope
+     */
+    public HANScope<K, V> enter() {
+        return new HANScope<>(HANPersistentMap.empty(), this);
+    }
+
+    /**
+     * Returns the scope this scope is nested in
+     * @return the enclosing scope, or null for the outermost scope
+     */
+    public HANScope<K, V> exit() {
+        return parent;
+    }
+
+    /**
+     * Returns a scope in which name is bound to value in the innermost scope. This scope is not changed.
+     * @param name name to bind
+     * @param value value to bind to name
+     * @return the updated scope
+     */
+    public HANScope<K, V> define(K name, V value) {
+        return new HANScope<>(bindings.put(name, value), parent);
+    }
+
+    /**
+     * Looks up name, starting at the innermost scope and walking outwards
+     * @param name name to look up
+     * @return the value of the innermost binding, or null when name is not defined
+     */
+    public V lookup(K name) {
+        for (HANScope<K, V> scope = this; scope != null; scope = scope.parent) {
+            V value = scope.bindings.get(name);
+            if (value != null || scope.bindings.containsKey(name)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether name is defined in this scope or one of its enclosing scopes
+     * @param name name to look up
+     * @return true when defined, false otherwise
+     */
+    public boolean isDefined(K name) {
+        for (HANScope<K, V> scope = this; scope != null; scope = scope.parent) {
+            if (scope.bindings.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Number of nested scopes, including this one
+     * @return the nesting depth
+     */
+    public int getDepth() {
+        int depth = 0;
+        for (HANScope<K, V> scope = this; scope != null; scope = scope.parent) {
+            depth++;
+        }
+        return depth;
+    }
+}
@@ -1,6 +1,6 @@
 package nl.han.ica.datastructures;
 
-public class HANStack<T> implements IHANStack {
+public class HANStack<T> implements IHANStack<T> {
     private int size;
     private HANLinkedList<T> stack;
     private int top;
@@ -12,7 +12,7 @@ public class HANStack<T> implements IHANStack {
     }
 
     @Override
-    public void push(Object value) {
+    public void push(T value) {
         if (top == size) {
             size = size * 2 + 1;
         }
@@ -21,18 +21,18 @@ public class HANStack<T> implements IHANStack {
     }
 
     @Override
-    public Object pop() {
+    public T pop() {
         if (top == 0) {
             return null;
         }
 
-        T poppedElement = (T) stack.get(--top);
+        T poppedElement = stack.get(--top);
         stack.delete(top);
         return poppedElement;
     }
 
     @Override
-    public Object peek() {
+    public T peek() {
         if (top == 0) {
             return null;
         }
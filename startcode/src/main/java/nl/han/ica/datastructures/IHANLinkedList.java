@@ -1,12 +1,18 @@
 package nl.han.ica.datastructures;
 
-public interface IHANLinkedList<T> {
+public interface IHANLinkedList<T> extends Iterable<T> {
     /**
      * Adds value to the front of the list
      * @param value generic value to be added
      */
     void addFirst(T value);
 
+    /**
+     * Adds value to the back of the list in O(1) time
+     * @param value generic value to be added
+     */
+    void addLast(T value);
+
     /**
      * Clears list. Size equals 0 afterwards
      */
@@ -38,7 +44,7 @@ public interface IHANLinkedList<T> {
     void removeFirst();
 
     /**
-     * Returns first element in O(n) time
+     * Returns first element in O(1) time
      * @return first element
      */
     T getFirst();
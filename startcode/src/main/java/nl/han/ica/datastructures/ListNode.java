@@ -4,7 +4,7 @@ public class ListNode <T>{
     public T element;
     public ListNode<T> next;
 
-    public ListNode(Object value){
-        this.element = (T) value;
+    public ListNode(T value){
+        this.element = value;
     }
 }
@@ -1,31 +1,54 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.CompactAST;
 import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.Diagnostics;
 import nl.han.ica.icss.checker.SemanticError;
 import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.parser.ASTCache;
+import nl.han.ica.icss.parser.ParseContext;
+import nl.han.ica.icss.parser.ParserEngine;
+import nl.han.ica.icss.parser.RecursiveDescentParser;
 import nl.han.ica.icss.transforms.Evaluator;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
-import org.antlr.v4.runtime.tree.ParseTree;
-import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public class Pipeline implements ANTLRErrorListener {
 
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
     private AST ast;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
     private List<String> errors;
+    private ParserEngine parserEngine = ParserEngine.ANTLR;
+    private boolean parallel = false;
+    private boolean profiling = false;
+    private String profileReport;
+    private ASTCache cache;
+    private BiConsumer<? super ASTNode, ? super SemanticError> diagnosticsListener;
+    private boolean immutable = false;
+    // The tree transform() started from in immutable mode, null until it ran
+    private AST untransformed;
 
     public Pipeline() {
         errors = new ArrayList<>();
@@ -47,30 +70,234 @@ public class Pipeline implements ANTLRErrorListener {
         return transformed;
     }
 
+    /**
+     * Selects the parser used by {@link #parseString(String)}. Streaming parses always use ANTLR.
+     * @param parserEngine the parser to use, ANTLR by default
+     */
+    public void setParserEngine(ParserEngine parserEngine) {
+        this.parserEngine = parserEngine;
+    }
+
+    /**
+     * Lets {@link #parseString(String)} split large input and parse the parts on the common
+     * fork/join pool, and {@link #check()} check the style rules of large stylesheets there.
+     * Only the ANTLR engine parses in parallel.
+     * @param parallel true to parse and check large input in parallel
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Makes {@link #parseString(String)} profile the parser's decisions, see {@link #getProfileReport()}.
+     * A profiled parse uses the ANTLR engine with full LL prediction on one thread.
+     * @param profiling true to profile
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    /**
+     * Returns per decision of the grammar how it was predicted in the last profiled parse:
+     * SLL lookahead depth, fallbacks to full-context LL prediction and ambiguities, as a table
+     * @return the table, or null when no parse was profiled
+     */
+    public String getProfileReport() {
+        return profileReport;
+    }
+
+    /**
+     * Keeps the trees parsed by {@link #parseString(String)} and {@link #parse(Path)} in directory and
+     * reads them from there instead of parsing source that was parsed before. Profiled parses skip the cache.
+     * @param directory where to keep the trees, or null to always parse
+     */
+    public void setCacheDirectory(Path directory) {
+        this.cache = directory == null ? null : new ASTCache(directory);
+    }
+
+    /**
+     * Passes every semantic error found by {@link #check()} to listener as soon as it is found,
+     * before the check is done. A parallel check passes the errors of the style rules once they are all checked.
+     * @param listener called with the node and its error, or null
+     */
+    public void setDiagnosticsListener(BiConsumer<? super ASTNode, ? super SemanticError> listener) {
+        this.diagnosticsListener = listener;
+    }
+
+    /**
+     * Makes {@link #transform()} leave the checked tree as it is and build a new one that shares
+     * its unchanged parts, see {@link nl.han.ica.icss.transforms.Transform#transform(AST)}.
+     * Transforming again starts from the checked tree, not from the result.
+     * @param immutable true to keep the checked tree
+     */
+    public void setImmutable(boolean immutable) {
+        this.immutable = immutable;
+    }
+
+    /**
+     * Parses the bundled example stylesheets so the first real parse does not pay for a cold parser.
+     * Call once at startup.
+     */
+    public static void warmUp() {
+        ParseContext.warmUp();
+    }
+
     public void parseString(String input) {
+        if (profiling) {
+            parse(context -> {
+                context.setProfile(true);
+                try {
+                    AST profiled = context.parse(CharStreams.fromString(input), this);
+                    profileReport = context.getLastProfile().toTable();
+                    return profiled;
+                } finally {
+                    context.setProfile(false);
+                }
+            });
+            return;
+        }
+        if (cache == null) {
+            parseUncached(input);
+            return;
+        }
+        AST cached = cache.load(input);
+        if (cached != null) {
+            parse(context -> cached);
+            return;
+        }
+        parseUncached(input);
+        if (parsed) {
+            cache.store(input, ast);
+        }
+    }
 
-        //Lex (with Antlr's generated lexer)
-        CharStream inputStream = CharStreams.fromString(input);
-        ICSSLexer lexer = new ICSSLexer(inputStream);
-        lexer.removeErrorListeners();
-        lexer.addErrorListener(this);
-        errors.clear();
-        try {
-            CommonTokenStream tokens = new CommonTokenStream(lexer);
+    private void parseUncached(String input) {
+        if (parserEngine == ParserEngine.RECURSIVE_DESCENT) {
+            parse(context -> new RecursiveDescentParser().parse(input, this));
+            return;
+        }
+        if (parallel) {
+            parse(context -> ParseContext.parseParallel(input, this, ForkJoinPool.commonPool()));
+            return;
+        }
+        //Lex and parse (with Antlr's generated lexer and parser, reused per thread)
+        parse(context -> context.parse(CharStreams.fromString(input), this));
+    }
+
+    /**
+     * Parses the file at path as UTF-8 without loading it into memory as a whole,
+     * unless a cache directory is set
+     * @param path the ICSS file
+     * @throws IOException when the file cannot be read
+     */
+    public void parse(Path path) throws IOException {
+        if (cache != null) {
+            // The cache needs the whole text for its hash
+            parseString(Files.readString(path));
+            return;
+        }
+        try (ReadableByteChannel channel = Files.newByteChannel(path)) {
+            parse(channel);
+        }
+    }
+
+    /**
+     * Parses UTF-8 encoded ICSS from channel, see {@link #parse(InputStream)}
+     * @param channel the ICSS source, not closed by this method
+     * @throws IOException when reading fails
+     */
+    public void parse(ReadableByteChannel channel) throws IOException {
+        parse(Channels.newInputStream(channel));
+    }
 
-            //Parse (with Antlr's generated parser)
-            ICSSParser parser = new ICSSParser(tokens);
-            parser.removeErrorListeners();
-            parser.addErrorListener(this);
+    /**
+     * Parses UTF-8 encoded ICSS from inputStream. Characters and tokens are streamed, so memory use
+     * depends on the size of the largest rule rather than on the size of the input.
+     * @param inputStream the ICSS source, not closed by this method
+     * @throws IOException when reading fails
+     */
+    public void parse(InputStream inputStream) throws IOException {
+        try {
+            CharStream charStream = new UnbufferedCharStream(inputStream, STREAM_BUFFER_SIZE, StandardCharsets.UTF_8);
+            parse(context -> context.parseStreaming(charStream, this));
+        } catch (RuntimeException e) {
+            // UnbufferedCharStream wraps read failures
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-            ParseTree parseTree = parser.stylesheet();
+    /**
+     * Parses UTF-8 encoded ICSS from inputStream like {@link #parse(InputStream)}, into a {@link CompactAST}
+     * for {@link #compile(CompactAST)}. Syntax errors are in {@link #getErrors()}, the AST of the pipeline
+     * is not changed.
+     * @param inputStream the ICSS source, not closed by this method
+     * @return the tree, or null when the source has syntax errors
+     * @throws IOException when reading fails
+     */
+    public CompactAST parseCompact(InputStream inputStream) throws IOException {
+        errors.clear();
+        CompactAST compact;
+        try {
+            CharStream charStream = new UnbufferedCharStream(inputStream, STREAM_BUFFER_SIZE, StandardCharsets.UTF_8);
+            compact = ParseContext.forCurrentThread().parseStreamingCompact(charStream, this);
+        } catch (RecognitionException e) {
+            errors.add(e.getMessage());
+            return null;
+        } catch (ParseCancellationException e) {
+            errors.add("Syntax error");
+            return null;
+        } catch (RuntimeException e) {
+            // UnbufferedCharStream wraps read failures
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return errors.isEmpty() ? compact : null;
+    }
 
-            //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
-            ParseTreeWalker walker = new ParseTreeWalker();
-            walker.walk(listener, parseTree);
+    /**
+     * Checks, transforms and generates compact one top-level statement at a time: each is built as
+     * objects, checked, evaluated and written as CSS, then dropped, while the global variables are
+     * carried from one statement to the next. Only the largest statement is ever held as objects.
+     * Semantic errors are in {@link #getErrors()} and go to the diagnostics listener as in {@link #check()};
+     * after the first one the remaining statements are only checked. The AST of the pipeline is not changed.
+     * @param compact a stylesheet without syntax errors, for instance from {@link #parseCompact(InputStream)}
+     * @return the CSS, or null when the stylesheet has semantic errors
+     */
+    public String compile(CompactAST compact) {
+        errors.clear();
+        Checker checker = new Checker();
+        Evaluator evaluator = new Evaluator();
+        Generator generator = new Generator();
+        StringBuilder css = new StringBuilder();
+        Diagnostics diagnostics = new Diagnostics(diagnosticsListener);
+        diagnostics.collect(() -> {
+            for (int statement = compact.firstChild(CompactAST.ROOT); statement != CompactAST.NONE;
+                 statement = compact.nextSibling(statement)) {
+                ASTNode node = compact.toASTNode(statement);
+                checker.checkStatement(node);
+                if (diagnostics.isEmpty()) {
+                    ASTNode evaluated = evaluator.applyStatement(node);
+                    if (evaluated != null) {
+                        generator.generate(evaluated, css);
+                    }
+                }
+            }
+        });
+        for (SemanticError e : diagnostics.getErrors()) {
+            errors.add(e.toString());
+        }
+        return errors.isEmpty() ? css.toString() : null;
+    }
 
-            this.ast = listener.getAST();
+    private void parse(Function<ParseContext, AST> parser) {
+        errors.clear();
+        try {
+            this.ast = parser.apply(ParseContext.forCurrentThread());
 
         } catch (RecognitionException e) {
             this.ast = new AST();
@@ -82,14 +309,20 @@ public class Pipeline implements ANTLRErrorListener {
         }
         parsed = errors.isEmpty();
         checked = transformed = false;
+        untransformed = null;
     }
     public boolean check() {
             if(ast == null)
                 return false;
 
-           (new Checker()).check(this.ast);
+            Diagnostics diagnostics = new Diagnostics(diagnosticsListener);
+            if (parallel) {
+                diagnostics.collect(() -> (new Checker()).checkParallel(this.ast, ForkJoinPool.commonPool()));
+            } else {
+                diagnostics.collect(() -> (new Checker()).check(this.ast));
+            }
 
-            ArrayList<SemanticError> errors = this.ast.getErrors();
+            ArrayList<SemanticError> errors = diagnostics.getErrors();
             if (!errors.isEmpty()) {
                 for (SemanticError e : errors) {
                     this.errors.add(e.toString());
@@ -98,6 +331,7 @@ public class Pipeline implements ANTLRErrorListener {
 
             checked = errors.isEmpty();
             transformed = false;
+            untransformed = null;
             return errors.isEmpty();
     }
 
@@ -109,7 +343,14 @@ public class Pipeline implements ANTLRErrorListener {
         if(ast == null)
             return;
 
-        (new Evaluator()).apply(ast);
+        if (immutable) {
+            if (untransformed == null) {
+                untransformed = ast;
+            }
+            ast = (new Evaluator()).transform(untransformed);
+        } else {
+            (new Evaluator()).apply(ast);
+        }
 
 
         transformed = errors.isEmpty();
@@ -2,6 +2,9 @@ package nl.han.ica.icss.ast;
 
 import nl.han.ica.icss.checker.SemanticError;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Objects;
@@ -19,6 +22,9 @@ public class AST {
 	public void setRoot(Stylesheet stylesheet) {
 		root = stylesheet;
 	}
+	/*
+	 Finds the errors by visiting every node. To get them as they are set, check inside Diagnostics.collect().
+	 */
     public ArrayList<SemanticError> getErrors() {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
         collectErrors(errors,root);
@@ -28,10 +34,48 @@ public class AST {
 	    if(node.hasError()) {
 	        errors.add(node.getError());
         }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+        for(int i = 0, count = node.childCount(); i < count; i++) {
+	        collectErrors(errors,node.childAt(i));
         }
     }
+
+	/**
+	 * Writes the tree in a compact binary form, see {@link #readFrom(InputStream)}
+	 * @param out where to write, not closed by this method
+	 * @param sourceHash a hash of the source the tree was parsed from, stored to detect stale copies
+	 * @throws IOException when writing fails
+	 */
+	public void writeTo(OutputStream out, long sourceHash) throws IOException {
+		ASTCodec.write(this, sourceHash, out);
+	}
+
+	public void writeTo(OutputStream out) throws IOException {
+		writeTo(out, 0L);
+	}
+
+	/**
+	 * Reads a tree written by {@link #writeTo(OutputStream, long)}, with its source positions.
+	 * Semantic errors are not written, so a tree should be written before it is checked.
+	 * @param in the rest of this stream is read, it is not closed
+	 * @return the tree
+	 * @throws IOException when reading fails, or the data is not a tree in the current format
+	 */
+	public static AST readFrom(InputStream in) throws IOException {
+		return ASTCodec.read(in, false, 0L);
+	}
+
+	/**
+	 * Reads a tree like {@link #readFrom(InputStream)}, if it was written for the source with sourceHash
+	 * @param in the rest of this stream is read, it is not closed
+	 * @param sourceHash the hash passed to writeTo
+	 * @return the tree
+	 * @throws IOException when reading fails, the data is not a tree in the current format
+	 * or it was written with another hash
+	 */
+	public static AST readFrom(InputStream in, long sourceHash) throws IOException {
+		return ASTCodec.read(in, true, sourceHash);
+	}
+
 	@Override
 	public String toString() {
 		return root.toString();
@@ -0,0 +1,282 @@
+package nl.han.ica.icss.ast;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The binary form of an AST written by {@link AST#writeTo(OutputStream, long)}.
+ *
+ * A file starts with the bytes "ICSA", the format version and the 8 byte hash of the source it was
+ * parsed from. Then comes a table of every distinct name, each once, and the nodes in preorder. A
+ * node is its tag (the ordinal of its {@link CompactAST.Kind}), its name's index in the table or its
+ * literal value, its start and stop position and its number of children. Positions are stored per
+ * part (offset, line and column) relative to the position before them, so most take a few bytes.
+ * All numbers are varints, signed ones zigzag encoded. Semantic errors are not stored.
+ *
+ * Nodes are written and read with an explicit stack, so the depth of a tree (a long sum is as deep
+ * as it has terms) is limited by memory and not by the thread's stack. Counts and lengths are checked
+ * against the bytes that are left, so corrupt data fails with an IOException.
+ *
+ * Changing the layout or {@link CompactAST.Kind} needs a new {@link #FORMAT_VERSION}.
+ */
+final class ASTCodec {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final byte[] MAGIC = {'I', 'C', 'S', 'A'};
+    private static final CompactAST.Kind[] KINDS = CompactAST.Kind.values();
+
+    private ASTCodec() {
+    }
+
+    static void write(AST ast, long sourceHash, OutputStream out) throws IOException {
+        Writer writer = new Writer();
+        writer.tree(ast.root);
+
+        Buffer header = new Buffer();
+        header.bytes(MAGIC);
+        header.varint(FORMAT_VERSION);
+        header.fixed64(sourceHash);
+        header.varint(writer.names.size());
+        for (String name : writer.names) {
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            header.varint(utf8.length);
+            header.bytes(utf8);
+        }
+        out.write(header.data, 0, header.size);
+        out.write(writer.nodes.data, 0, writer.nodes.size);
+    }
+
+    static AST read(InputStream in, boolean checkHash, long sourceHash) throws IOException {
+        Reader reader = new Reader(in.readAllBytes());
+        try {
+            for (byte magic : MAGIC) {
+                if (reader.data[reader.position++] != magic) {
+                    throw new IOException("Not an ICSS AST");
+                }
+            }
+            int version = reader.varint();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("AST format version " + version + ", expected " + FORMAT_VERSION);
+            }
+            long storedHash = reader.fixed64();
+            if (checkHash && storedHash != sourceHash) {
+                throw new IOException("AST was written for other source");
+            }
+            // Every name takes at least its length byte
+            String[] names = new String[reader.count(1)];
+            for (int i = 0; i < names.length; i++) {
+                int length = reader.count(1);
+                names[i] = new String(reader.data, reader.position, length, StandardCharsets.UTF_8);
+                reader.position += length;
+            }
+            reader.names = names;
+            ASTNode root = reader.tree();
+            if (!(root instanceof Stylesheet) || reader.position != reader.data.length) {
+                throw new IOException("Corrupt AST");
+            }
+            return new AST((Stylesheet) root);
+        } catch (RuntimeException e) {
+            // Whatever the bytes are, they are not a tree
+            throw new IOException("Corrupt AST", e);
+        }
+    }
+
+    private static final class Writer {
+        private final Buffer nodes = new Buffer();
+        private final ArrayList<String> names = new ArrayList<>();
+        private final HashMap<String, Integer> nameIndex = new HashMap<>();
+        private long previous = SourcePosition.UNKNOWN;
+
+        private void tree(ASTNode root) {
+            ArrayList<ASTNode> stack = new ArrayList<>();
+            stack.add(root);
+            while (!stack.isEmpty()) {
+                ASTNode node = stack.remove(stack.size() - 1);
+                node(node);
+                // Pushed last to first, so they are written first to last
+                for (int i = node.childCount() - 1; i >= 0; i--) {
+                    stack.add(node.childAt(i));
+                }
+            }
+        }
+
+        private void node(ASTNode node) {
+            CompactAST.Kind kind = CompactAST.kindOf(node);
+            nodes.varint(kind.ordinal());
+            if (CompactAST.hasName(kind)) {
+                nodes.varint(intern(CompactAST.nameOf(node)));
+            } else {
+                nodes.signedVarint(CompactAST.valueOf(node));
+            }
+            nodes.position(node.getStart(), previous);
+            nodes.position(node.getStop(), node.getStart());
+            previous = node.getStart();
+            nodes.varint(node.childCount());
+        }
+
+        private int intern(String name) {
+            Integer index = nameIndex.get(name);
+            if (index == null) {
+                index = names.size();
+                names.add(name);
+                nameIndex.put(name, index);
+            }
+            return index;
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] data;
+        private int position = 0;
+        private String[] names;
+        private long previous = SourcePosition.UNKNOWN;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private ASTNode tree() throws IOException {
+            // The nodes whose children are being read, with the number of children still to read
+            ArrayList<ASTNode> parents = new ArrayList<>();
+            int[] remaining = new int[16];
+            ASTNode node = node();
+            while (true) {
+                // A node takes at least 9 bytes: tag, name or value, 2 positions of 3 parts and child count
+                int count = count(9);
+                if (count > 0) {
+                    if (parents.size() == remaining.length) {
+                        remaining = Arrays.copyOf(remaining, remaining.length * 2);
+                    }
+                    remaining[parents.size()] = count;
+                    parents.add(node);
+                    node = node();
+                    continue;
+                }
+                // node is complete, add it to its parent and climb while the parents are complete
+                while (true) {
+                    int top = parents.size() - 1;
+                    if (top < 0) {
+                        return node;
+                    }
+                    ASTNode parent = parents.get(top);
+                    parent.addChild(node);
+                    if (--remaining[top] > 0) {
+                        break;
+                    }
+                    parents.remove(top);
+                    node = parent;
+                }
+                node = node();
+            }
+        }
+
+        // Reads a node without its children
+        private ASTNode node() throws IOException {
+            int tag = varint();
+            if (tag < 0 || tag >= KINDS.length) {
+                throw new IOException("Unknown node tag " + tag);
+            }
+            CompactAST.Kind kind = KINDS[tag];
+            ASTNode node = CompactAST.hasName(kind)
+                    ? CompactAST.create(kind, 0, names[varint()])
+                    : CompactAST.create(kind, signedVarint(), null);
+            long start = position(previous);
+            long stop = position(start);
+            previous = start;
+            node.setPosition(start, stop);
+            return node;
+        }
+
+        /*
+         Reads a count of things that take at least minBytes each and must fit in the bytes that are left
+         */
+        private int count(int minBytes) throws IOException {
+            int count = varint();
+            if (count < 0 || count > (data.length - position) / minBytes) {
+                throw new IOException("Corrupt AST: count " + count + " with " + (data.length - position) + " bytes left");
+            }
+            return count;
+        }
+
+        private long position(long relativeTo) {
+            int offset = SourcePosition.offset(relativeTo) + signedVarint();
+            int line = SourcePosition.line(relativeTo) + signedVarint();
+            int column = varint();
+            return SourcePosition.of(offset, line, column);
+        }
+
+        private int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = data[position++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint too long");
+        }
+
+        private int signedVarint() {
+            int zigzag = varint();
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+
+        private long fixed64() {
+            long value = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                value = value << 8 | (data[position++] & 0xff);
+            }
+            return value;
+        }
+    }
+
+    private static final class Buffer {
+        private byte[] data = new byte[1024];
+        private int size = 0;
+
+        private void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                data[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        private void signedVarint(int value) {
+            varint((value << 1) ^ (value >> 31));
+        }
+
+        private void position(long position, long relativeTo) {
+            signedVarint(SourcePosition.offset(position) - SourcePosition.offset(relativeTo));
+            signedVarint(SourcePosition.line(position) - SourcePosition.line(relativeTo));
+            varint(SourcePosition.column(position));
+        }
+
+        private void fixed64(long value) {
+            ensure(Long.BYTES);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                data[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
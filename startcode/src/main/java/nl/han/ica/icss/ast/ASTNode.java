@@ -1,14 +1,42 @@
 package nl.han.ica.icss.ast;
 
+import nl.han.ica.icss.checker.Diagnostics;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
 
 public class ASTNode {
 
     private SemanticError error = null;
 
+    // Where the node's first character is and how far it extends to its last one, packed by SourcePosition
+    private long start = SourcePosition.UNKNOWN;
+    private long extent = SourcePosition.extent(SourcePosition.UNKNOWN, SourcePosition.UNKNOWN);
+
+    /*
+     Every cached hash is stamped with the epoch it was computed in. invalidateHash() forgets the
+     hashes along the parent path of the changed node, it only starts a new epoch, and so forgets
+     every cached hash, when that path runs through a node that more than one parent has hashed.
+     Epoch 0 is never used.
+     */
+    private static final AtomicInteger HASH_EPOCH = new AtomicInteger(1);
+
+    // The hashParent of a node that was hashed by more than one parent, shared between trees
+    private static final ASTNode SHARED = new ASTNode();
+
+    private static final AtomicReferenceFieldUpdater<ASTNode, ASTNode> HASH_PARENT =
+            AtomicReferenceFieldUpdater.newUpdater(ASTNode.class, ASTNode.class, "hashParent");
+
+    // The structural hash of this subtree in the low half and its epoch in the high half, 0 when
+    // not computed. A single field, so a thread sees a hash with its own epoch or nothing.
+    private volatile long hashCache;
+
+    // The node whose cached hash includes this one, SHARED when there is more than one
+    private volatile ASTNode hashParent;
+
     /*
      This method is used in the GUI to create an appropriate label
      in the tree visualisation.
@@ -19,10 +47,41 @@ public class ASTNode {
 
     /*
      Different AST nodes use different attributes to store their children.
-     This method provides a unified interface.
+     This method provides a unified interface. It builds a new list on every call,
+     walkers should use childCount() and childAt() instead.
      */
     public ArrayList<ASTNode> getChildren() {
-        return new ArrayList<>();
+        int count = childCount();
+        ArrayList<ASTNode> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(childAt(i));
+        }
+        return children;
+    }
+
+    /*
+     The number of children, in the same order as getChildren() but without building a list.
+     Subclasses with children override this together with childAt().
+     */
+    public int childCount() {
+        return 0;
+    }
+
+    public ASTNode childAt(int index) {
+        throw new IndexOutOfBoundsException("Child " + index + " of " + getNodeLabel() + " with " + childCount() + " children");
+    }
+
+    public void forEachChild(Consumer<? super ASTNode> action) {
+        for (int i = 0, count = childCount(); i < count; i++) {
+            action.accept(childAt(i));
+        }
+    }
+
+    /*
+     Calls the method of visitor for this type of node, see ASTVisitor. Every node type overrides this.
+     */
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitNode(this, context);
     }
     /*
     By implementing this method in a subclass you can easily create AST nodes
@@ -42,14 +101,46 @@ public class ASTNode {
         return this.error;
     }
 
+    /*
+     Stores the error on this node and reports it to the Diagnostics collecting on this thread, if any.
+     */
     public void setError(String description) {
-        this.error = new SemanticError(description);
+        this.error = new SemanticError(description, start);
+        Diagnostics diagnostics = Diagnostics.current();
+        if (diagnostics != null) {
+            diagnostics.report(this, error);
+        }
     }
 
     public boolean hasError() {
         return error != null;
     }
 
+    /*
+     The source position of the first character of this node, see SourcePosition.
+     Positions are not part of equals: the same tree parsed from other text is still equal.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public long getStop() {
+        return SourcePosition.stop(start, extent);
+    }
+
+    public void setPosition(long start, long stop) {
+        this.start = start;
+        this.extent = SourcePosition.extent(start, stop);
+    }
+
+    public int getLine() {
+        return SourcePosition.line(start);
+    }
+
+    public int getColumn() {
+        return SourcePosition.column(start);
+    }
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
@@ -60,26 +151,134 @@ public class ASTNode {
 		builder.append("[");
 		builder.append(getNodeLabel());	
 		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
+		for(int i = 0, count = childCount(); i < count; i++) {
+			childAt(i).toString(builder);
+		}
 		builder.append("]");
 	}
 
 	@Override
     public boolean equals(Object o) {
-        if(! (o instanceof ASTNode))
+        if(this == o)
+            return true;
+        if(o == null || getClass() != o.getClass())
             return false;
+        ASTNode other = (ASTNode) o;
+        //Different hashes are different trees, which is cheap to see once the hashes are cached
+        if(hashCode() != other.hashCode()) {
+            assert hashCode() == computeHash() && other.hashCode() == other.computeHash()
+                    : "stale cached hash: a child field was changed without invalidateHash()";
+            return false;
+        }
         //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        int count = this.childCount();
+        if(other.childCount() != count)
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        for(int i = 0; i < count; i++ ) {
+            if(!this.childAt(i).equals(other.childAt(i))) {
                 return false;
             }
         }
         return true;
     }
+
+    /*
+     A Merkle-style hash: the node type, localHash() and the hashes of all children, in order.
+     It is computed once and cached, so hashing or comparing a subtree again costs nothing until
+     something changes. addChild() and removeChild() invalidate it, code that assigns a child field
+     or changes a child list directly calls invalidateHash() on the node it changed.
+     */
+    @Override
+    public int hashCode() {
+        int epoch = HASH_EPOCH.get();
+        long cached = hashCache;
+        if((int) (cached >>> 32) == epoch) {
+            return (int) cached;
+        }
+        // The epoch is read before the children are, so a new epoch started meanwhile makes this
+        // stale. Changing a tree while another thread hashes it is not supported.
+        int result = 31 * getClass().getName().hashCode() + localHash();
+        for(int i = 0, count = childCount(); i < count; i++) {
+            ASTNode child = childAt(i);
+            child.addHashParent(this);
+            result = 31 * result + child.hashCode();
+        }
+        hashCache = (long) epoch << 32 | (result & 0xffffffffL);
+        return result;
+    }
+
+    /*
+     The hash of the subtree without using or filling any cache, to check the cached ones.
+     */
+    private int computeHash() {
+        int result = 31 * getClass().getName().hashCode() + localHash();
+        for(int i = 0, count = childCount(); i < count; i++) {
+            result = 31 * result + childAt(i).computeHash();
+        }
+        return result;
+    }
+
+    /*
+     The hash of the node's own values, such as a literal's value or a selector's name.
+     Children are hashed by hashCode(), subclasses with values of their own override this.
+     */
+    protected int localHash() {
+        return 0;
+    }
+
+    /*
+     Forgets the cached hash of this node and of every node whose hash includes it. A node
+     without a current hash has no hashed ancestors, so the walk up stops there.
+     */
+    public void invalidateHash() {
+        int epoch = HASH_EPOCH.get();
+        for(ASTNode node = this; node != null; node = node.hashParent) {
+            if(node == SHARED) {
+                /* More than one tree includes the node and only one parent is remembered */
+                newHashEpoch(epoch);
+                return;
+            }
+            if((int) (node.hashCache >>> 32) != epoch) {
+                return;
+            }
+            node.hashCache = 0;
+        }
+    }
+
+    /*
+     Remembers that the hash of parent includes this node. A second parent, such as the same rule
+     in a transformed tree or a subtree moved to another tree, makes the node SHARED for good.
+     */
+    void addHashParent(ASTNode parent) {
+        ASTNode current = hashParent;
+        if(current == parent || current == SHARED) {
+            return;
+        }
+        if(current == null && HASH_PARENT.compareAndSet(this, null, parent)) {
+            return;
+        }
+        /* Another parent came first, possibly on another thread */
+        if(hashParent != parent) {
+            hashParent = SHARED;
+        }
+    }
+
+    /*
+     Forgets every cached hash, for nodes that change without knowing which nodes hashed them.
+     */
+    static void forgetAllHashes() {
+        newHashEpoch(HASH_EPOCH.get());
+    }
+
+    private static void newHashEpoch(int epoch) {
+        int next = epoch + 1 == 0 ? 1 : epoch + 1;
+        HASH_EPOCH.compareAndSet(epoch, next);
+    }
+
+    /*
+     Whether this node holds a hash computed since the last change, for tests.
+     */
+    boolean hasCachedHash() {
+        return (int) (hashCache >>> 32) == HASH_EPOCH.get();
+    }
 }
@@ -0,0 +1,431 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.ast.literals.PercentageLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An AST kept in a few primitive arrays instead of one object per node, for stylesheets too large
+ * to hold as objects. A node is an index: its kind, its first child and next sibling, one int of
+ * payload and its start and stop position are entries in parallel arrays. Children come in the
+ * order of {@link ASTNode#childAt(int)}. The payload of a literal is its value, a color's is its
+ * packed rgb value; selectors, property names and variable names store an index into a table that
+ * holds every distinct string once.
+ * Node {@link #ROOT} is the stylesheet.
+ *
+ * The checker, the evaluator and the generator work on {@link ASTNode}s: {@link #toAST()} builds them
+ * for the whole tree, {@link #toASTNode(int)} for one subtree, for instance one top-level statement
+ * at a time as {@link nl.han.ica.icss.Pipeline#compile(CompactAST)} does. Semantic errors are not
+ * stored, they belong to the objects the checker ran on. Copying walks the trees with a stack, so
+ * deep trees such as long sums do not overflow the thread's stack.
+ */
+public final class CompactAST {
+
+    public static final int NONE = -1;
+    public static final int ROOT = 0;
+
+    private static final int INITIAL_CAPACITY = 64;
+    // What one distinct string costs beyond its characters: the String, its byte[], a map entry and a list slot
+    private static final int STRING_OVERHEAD_BYTES = 24 + 16 + 32 + 16 + 4;
+
+    public enum Kind {
+        STYLESHEET, STYLERULE, CLASS_SELECTOR, ID_SELECTOR, TAG_SELECTOR, DECLARATION, PROPERTY_NAME,
+        VARIABLE_ASSIGNMENT, VARIABLE_REFERENCE, IF_CLAUSE, ELSE_CLAUSE, ADD, SUBTRACT, MULTIPLY,
+        BOOL, COLOR, PERCENTAGE, PIXEL, SCALAR
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] firstChild = new int[INITIAL_CAPACITY];
+    private int[] nextSibling = new int[INITIAL_CAPACITY];
+    private int[] payload = new int[INITIAL_CAPACITY];
+    private long[] start = new long[INITIAL_CAPACITY];
+    private long[] stop = new long[INITIAL_CAPACITY];
+    private int size = 0;
+    private int lastStatement = NONE;
+
+    private final ArrayList<String> strings = new ArrayList<>();
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+
+    /**
+     * Creates an AST holding an empty stylesheet
+     */
+    public CompactAST() {
+        allocate(Kind.STYLESHEET, 0, SourcePosition.UNKNOWN, SourcePosition.UNKNOWN);
+    }
+
+    /**
+     * Copies a tree of objects into arrays
+     * @param ast the tree to copy
+     * @return the compact copy
+     */
+    public static CompactAST fromAST(AST ast) {
+        CompactAST compact = new CompactAST();
+        Stylesheet root = ast.root;
+        for (int i = 0, count = root.childCount(); i < count; i++) {
+            compact.append(root.childAt(i));
+        }
+        compact.start[ROOT] = root.getStart();
+        compact.stop[ROOT] = root.getStop();
+        compact.trimToSize();
+        return compact;
+    }
+
+    /**
+     * Adds a copy of statement to the end of the stylesheet, the stylesheet's position grows to include it.
+     * Null children, which error recovery can leave in a body, are left out.
+     * @param statement a top-level variable assignment or style rule
+     */
+    public void append(ASTNode statement) {
+        if (statement == null) {
+            return;
+        }
+        int node = add(statement);
+        if (lastStatement == NONE) {
+            firstChild[ROOT] = node;
+            start[ROOT] = start[node];
+        } else {
+            nextSibling[lastStatement] = node;
+        }
+        lastStatement = node;
+        stop[ROOT] = stop[node];
+    }
+
+    /**
+     * Builds the objects of the whole tree
+     * @return a new AST equal to the one this was built from
+     */
+    public AST toAST() {
+        return new AST((Stylesheet) toASTNode(ROOT));
+    }
+
+    /**
+     * Builds the objects of the subtree at node
+     * @param node the index of a node
+     * @return a new node with its children and positions
+     */
+    public ASTNode toASTNode(int node) {
+        ASTNode result = create(node);
+        result.setPosition(start[node], stop[node]);
+        // The objects on the path down to the node being built, with the next child each still has to build.
+        // A stack instead of recursion, sums are as deep as they have terms.
+        ArrayList<ASTNode> path = new ArrayList<>();
+        int[] next = new int[16];
+        path.add(result);
+        next[0] = firstChild[node];
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            int child = next[top];
+            if (child == NONE) {
+                path.remove(top);
+                continue;
+            }
+            next[top] = nextSibling[child];
+            ASTNode object = create(child);
+            object.setPosition(start[child], stop[child]);
+            path.get(top).addChild(object);
+            if (path.size() == next.length) {
+                next = Arrays.copyOf(next, next.length * 2);
+            }
+            next[path.size()] = firstChild[child];
+            path.add(object);
+        }
+        return result;
+    }
+
+    public int nodeCount() {
+        return size;
+    }
+
+    public Kind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * Returns the value of a pixel, percentage, scalar or color literal, or 1 and 0 for TRUE and FALSE
+     * @param node the index of a literal
+     * @return the literal's value
+     */
+    public int intValue(int node) {
+        return payload[node];
+    }
+
+    /**
+     * Returns the name of a selector, property or variable
+     * @param node the index of a node with a name
+     * @return the name
+     */
+    public String string(int node) {
+        return strings.get(payload[node]);
+    }
+
+    public long getStart(int node) {
+        return start[node];
+    }
+
+    public long getStop(int node) {
+        return stop[node];
+    }
+
+    /**
+     * Estimates the memory the tree takes: its arrays, including unused capacity, and its distinct strings
+     * @return the size in bytes
+     */
+    public long bytesUsed() {
+        long bytes = (long) kinds.length * Byte.BYTES
+                + (long) (firstChild.length + nextSibling.length + payload.length) * Integer.BYTES
+                + (long) (start.length + stop.length) * Long.BYTES;
+        for (String string : strings) {
+            bytes += STRING_OVERHEAD_BYTES + string.length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the unused capacity of the arrays, for a tree that is complete
+     */
+    public void trimToSize() {
+        resize(size);
+    }
+
+    private int add(ASTNode node) {
+        int root = allocate(kindOf(node), payloadOf(node), node.getStart(), node.getStop());
+        // The nodes on the path down to the one being copied, with their index, the number of children
+        // copied so far and the index of the last one. Nodes are allocated in preorder, like recursion would.
+        ArrayList<ASTNode> path = new ArrayList<>();
+        int[] indices = new int[16];
+        int[] copied = new int[16];
+        int[] last = new int[16];
+        path.add(node);
+        indices[0] = root;
+        last[0] = NONE;
+        while (!path.isEmpty()) {
+            int top = path.size() - 1;
+            ASTNode parent = path.get(top);
+            if (copied[top] == parent.childCount()) {
+                path.remove(top);
+                continue;
+            }
+            ASTNode child = parent.childAt(copied[top]++);
+            if (child == null) {
+                continue; // Left by error recovery, there is nothing to copy
+            }
+            int index = allocate(kindOf(child), payloadOf(child), child.getStart(), child.getStop());
+            if (last[top] == NONE) {
+                firstChild[indices[top]] = index;
+            } else {
+                nextSibling[last[top]] = index;
+            }
+            last[top] = index;
+            if (path.size() == indices.length) {
+                indices = Arrays.copyOf(indices, indices.length * 2);
+                copied = Arrays.copyOf(copied, copied.length * 2);
+                last = Arrays.copyOf(last, last.length * 2);
+            }
+            indices[path.size()] = index;
+            copied[path.size()] = 0;
+            last[path.size()] = NONE;
+            path.add(child);
+        }
+        return root;
+    }
+
+    private int allocate(Kind kind, int value, long nodeStart, long nodeStop) {
+        if (size == kinds.length) {
+            resize(Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        kinds[size] = (byte) kind.ordinal();
+        firstChild[size] = NONE;
+        nextSibling[size] = NONE;
+        payload[size] = value;
+        start[size] = nodeStart;
+        stop[size] = nodeStop;
+        return size++;
+    }
+
+    private void resize(int capacity) {
+        kinds = Arrays.copyOf(kinds, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        payload = Arrays.copyOf(payload, capacity);
+        start = Arrays.copyOf(start, capacity);
+        stop = Arrays.copyOf(stop, capacity);
+    }
+
+    private int intern(String string) {
+        Integer index = stringIndex.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndex.put(string, index);
+        }
+        return index;
+    }
+
+    static Kind kindOf(ASTNode node) {
+        if (node instanceof Stylesheet) {
+            return Kind.STYLESHEET;
+        } else if (node instanceof Stylerule) {
+            return Kind.STYLERULE;
+        } else if (node instanceof ClassSelector) {
+            return Kind.CLASS_SELECTOR;
+        } else if (node instanceof IdSelector) {
+            return Kind.ID_SELECTOR;
+        } else if (node instanceof TagSelector) {
+            return Kind.TAG_SELECTOR;
+        } else if (node instanceof Declaration) {
+            return Kind.DECLARATION;
+        } else if (node instanceof PropertyName) {
+            return Kind.PROPERTY_NAME;
+        } else if (node instanceof VariableAssignment) {
+            return Kind.VARIABLE_ASSIGNMENT;
+        } else if (node instanceof VariableReference) {
+            return Kind.VARIABLE_REFERENCE;
+        } else if (node instanceof IfClause) {
+            return Kind.IF_CLAUSE;
+        } else if (node instanceof ElseClause) {
+            return Kind.ELSE_CLAUSE;
+        } else if (node instanceof AddOperation) {
+            return Kind.ADD;
+        } else if (node instanceof SubtractOperation) {
+            return Kind.SUBTRACT;
+        } else if (node instanceof MultiplyOperation) {
+            return Kind.MULTIPLY;
+        } else if (node instanceof BoolLiteral) {
+            return Kind.BOOL;
+        } else if (node instanceof ColorLiteral) {
+            return Kind.COLOR;
+        } else if (node instanceof PercentageLiteral) {
+            return Kind.PERCENTAGE;
+        } else if (node instanceof PixelLiteral) {
+            return Kind.PIXEL;
+        } else if (node instanceof ScalarLiteral) {
+            return Kind.SCALAR;
+        }
+        throw new IllegalArgumentException("No compact form for " + node.getNodeLabel());
+    }
+
+    private int payloadOf(ASTNode node) {
+        String name = nameOf(node);
+        return name != null ? intern(name) : valueOf(node);
+    }
+
+    static String nameOf(ASTNode node) {
+        if (node instanceof ClassSelector) {
+            return ((ClassSelector) node).cls;
+        } else if (node instanceof IdSelector) {
+            return ((IdSelector) node).id;
+        } else if (node instanceof TagSelector) {
+            return ((TagSelector) node).tag;
+        } else if (node instanceof PropertyName) {
+            return ((PropertyName) node).name;
+        } else if (node instanceof VariableReference) {
+            return ((VariableReference) node).name;
+        }
+        return null;
+    }
+
+    static int valueOf(ASTNode node) {
+        if (node instanceof BoolLiteral) {
+            return ((BoolLiteral) node).value ? 1 : 0;
+        } else if (node instanceof ColorLiteral) {
+            return ((ColorLiteral) node).value;
+        } else if (node instanceof PercentageLiteral) {
+            return ((PercentageLiteral) node).value;
+        } else if (node instanceof PixelLiteral) {
+            return ((PixelLiteral) node).value;
+        } else if (node instanceof ScalarLiteral) {
+            return ((ScalarLiteral) node).value;
+        }
+        return 0;
+    }
+
+    private ASTNode create(int node) {
+        Kind kind = kind(node);
+        return create(kind, payload[node], hasName(kind) ? string(node) : null);
+    }
+
+    static boolean hasName(Kind kind) {
+        switch (kind) {
+            case CLASS_SELECTOR:
+            case ID_SELECTOR:
+            case TAG_SELECTOR:
+            case PROPERTY_NAME:
+            case VARIABLE_REFERENCE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Creates a node without children or position
+     * @param kind the type of node
+     * @param value the value of a literal, see {@link #intValue(int)}
+     * @param name the name of a selector, property or variable reference, null for other kinds
+     * @return the new node
+     */
+    static ASTNode create(Kind kind, int value, String name) {
+        switch (kind) {
+            case STYLESHEET:
+                return new Stylesheet();
+            case STYLERULE:
+                return new Stylerule();
+            case CLASS_SELECTOR:
+                return new ClassSelector(name);
+            case ID_SELECTOR:
+                return new IdSelector(name);
+            case TAG_SELECTOR:
+                return new TagSelector(name);
+            case DECLARATION:
+                return new Declaration();
+            case PROPERTY_NAME:
+                return new PropertyName(name);
+            case VARIABLE_ASSIGNMENT:
+                return new VariableAssignment();
+            case VARIABLE_REFERENCE:
+                return new VariableReference(name);
+            case IF_CLAUSE:
+                return new IfClause();
+            case ELSE_CLAUSE:
+                return new ElseClause();
+            case ADD:
+                return new AddOperation();
+            case SUBTRACT:
+                return new SubtractOperation();
+            case MULTIPLY:
+                return new MultiplyOperation();
+            case BOOL:
+                return new BoolLiteral(value != 0);
+            case COLOR:
+                return new ColorLiteral(value);
+            case PERCENTAGE:
+                return new PercentageLiteral(value);
+            case PIXEL:
+                return new PixelLiteral(value);
+            default:
+                return new ScalarLiteral(value);
+        }
+    }
+}
@@ -1,4 +1,28 @@
 package nl.han.ica.icss.ast;
 
 public abstract class Literal extends Expression {
+
+    /*
+     A literal has no children, so its hash is as cheap to compute as to look up. It is not cached:
+     hashing writes nothing to the literal, which may be shared by many trees and threads, see
+     LiteralFactory.
+     */
+    @Override
+    public int hashCode() {
+        return 31 * getClass().getName().hashCode() + localHash();
+    }
+
+    /*
+     A literal does not remember the parents that hashed it, for the same reason, so a change to
+     one forgets the cached hashes of all trees. Replacing the literal and calling invalidateHash()
+     on the node that holds it only forgets the hashes along that node's path.
+     */
+    @Override
+    public void invalidateHash() {
+        forgetAllHashes();
+    }
+
+    @Override
+    void addHashParent(ASTNode parent) {
+    }
 }
@@ -1,6 +1,5 @@
 package nl.han.ica.icss.ast;
 
-import java.util.ArrayList;
 
 public abstract class Operation extends Expression {
 
@@ -8,13 +7,20 @@ public abstract class Operation extends Expression {
     public Expression rhs;
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if(lhs != null)
-            children.add(lhs);
-        if(rhs != null)
-            children.add(rhs);
-        return children;
+    public int childCount() {
+        return (lhs != null ? 1 : 0) + (rhs != null ? 1 : 0);
+    }
+
+    @Override
+    public ASTNode childAt(int index) {
+        if(lhs != null) {
+            if(index == 0)
+                return lhs;
+            index--;
+        }
+        if(rhs != null && index == 0)
+            return rhs;
+        return super.childAt(index);
     }
 
     @Override
@@ -24,6 +30,7 @@ public abstract class Operation extends Expression {
         } else if(rhs == null) {
             rhs = (Expression) child;
         }
+        invalidateHash();
         return this;
     }
 }
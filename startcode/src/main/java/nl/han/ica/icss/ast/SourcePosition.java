@@ -0,0 +1,165 @@
+package nl.han.ica.icss.ast;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs a position in the source (character offset, line and column) into one long, so every
+ * AST node can remember where it came from without holding on to tokens or the parse tree.
+ *
+ * The offset takes the top 27 bits, the line the next 21 bits and the column the lowest 16 bits.
+ * Lines and columns start at 1 and 0 like ANTLR's. {@link #UNKNOWN} (line 0) marks nodes that were
+ * not parsed, such as the literals the evaluator computes, and positions that do not fit: past
+ * 134M characters, 2M lines or column 65535 a node has no position rather than a wrong one.
+ *
+ * A node keeps its stop as an extent relative to its start, see {@link #extent(long, long)}, which
+ * packs the length and the number of lines the same way.
+ */
+public final class SourcePosition {
+
+    public static final long UNKNOWN = 0L;
+    public static final int MAX_OFFSET = (1 << 27) - 1;
+    public static final int MAX_LINE = (1 << 21) - 1;
+    public static final int MAX_COLUMN = (1 << 16) - 1;
+
+    private static final int COLUMN_BITS = 16;
+    private static final int OFFSET_SHIFT = 21 + COLUMN_BITS;
+    // The extent of a stop that is not known although the start is
+    private static final long UNKNOWN_EXTENT = -1L;
+
+    private SourcePosition() {
+    }
+
+    /**
+     * Packs a position, negative values are treated as 0
+     * @param offset character offset from the start of the input
+     * @param line line number, starting at 1
+     * @param column column in the line, starting at 0
+     * @return the packed position, UNKNOWN when a value is too large to pack
+     */
+    public static long of(int offset, int line, int column) {
+        if (offset > MAX_OFFSET || line > MAX_LINE || column > MAX_COLUMN) {
+            return UNKNOWN;
+        }
+        long packedOffset = Math.max(0, offset);
+        long packedLine = Math.max(0, line);
+        long packedColumn = Math.max(0, column);
+        return packedOffset << OFFSET_SHIFT | packedLine << COLUMN_BITS | packedColumn;
+    }
+
+    public static int offset(long position) {
+        return (int) (position >>> OFFSET_SHIFT);
+    }
+
+    public static int line(long position) {
+        return (int) ((position >>> COLUMN_BITS) & MAX_LINE);
+    }
+
+    public static int column(long position) {
+        return (int) (position & MAX_COLUMN);
+    }
+
+    public static boolean isKnown(long position) {
+        return line(position) != 0;
+    }
+
+    /**
+     * Packs stop relative to start: the length, the number of lines and the column of stop.
+     * A stop before start is taken as start, and without a start the stop is unknown too.
+     * @param start the packed start position
+     * @param stop the packed stop position
+     * @return the extent, for {@link #stop(long, long)}
+     */
+    static long extent(long start, long stop) {
+        if (!isKnown(start) || !isKnown(stop)) {
+            return UNKNOWN_EXTENT;
+        }
+        if (offset(stop) < offset(start) || line(stop) < line(start)) {
+            return of(0, 0, column(start));
+        }
+        return of(offset(stop) - offset(start), line(stop) - line(start), column(stop));
+    }
+
+    /**
+     * @param start the packed start position
+     * @param extent the stop packed by {@link #extent(long, long)}
+     * @return the packed stop position
+     */
+    static long stop(long start, long extent) {
+        if (!isKnown(start) || extent == UNKNOWN_EXTENT) {
+            return UNKNOWN;
+        }
+        return of(offset(start) + offset(extent), line(start) + line(extent), column(extent));
+    }
+
+    /**
+     * Moves a position, for instance from a part of the input to the whole input
+     * @param position the packed position
+     * @param offsetDelta added to the offset
+     * @param lineDelta added to the line
+     * @param columnLine only positions on this line (before moving) have their column changed
+     * @param columnDelta added to the column of positions on columnLine
+     * @return the moved position, or UNKNOWN when position is unknown
+     */
+    public static long shift(long position, int offsetDelta, int lineDelta, int columnLine, int columnDelta) {
+        if (!isKnown(position)) {
+            return position;
+        }
+        int line = line(position);
+        int column = column(position);
+        if (line == columnLine) {
+            column += columnDelta;
+        }
+        return of(offset(position) + offsetDelta, line + lineDelta, column);
+    }
+
+    /**
+     * Shifts the start and stop of node and all nodes below it, see {@link #shift(long, int, int, int, int)}
+     * @param node the root of the subtree to move
+     * @param offsetDelta added to the offsets
+     * @param lineDelta added to the lines
+     * @param columnLine only positions on this line have their column changed
+     * @param columnDelta added to the columns on columnLine
+     */
+    public static void shift(ASTNode node, int offsetDelta, int lineDelta, int columnLine, int columnDelta) {
+        ArrayList<ASTNode> stack = new ArrayList<>();
+        stack.add(node);
+        shiftAll(stack, offsetDelta, lineDelta, columnLine, columnDelta);
+    }
+
+    /**
+     * Shifts every node in nodes and all nodes below them, see {@link #shift(ASTNode, int, int, int, int)}
+     * @param nodes the roots of the subtrees to move
+     * @param offsetDelta added to the offsets
+     * @param lineDelta added to the lines
+     * @param columnLine only positions on this line have their column changed
+     * @param columnDelta added to the columns on columnLine
+     */
+    public static void shift(List<? extends ASTNode> nodes, int offsetDelta, int lineDelta, int columnLine, int columnDelta) {
+        shiftAll(new ArrayList<>(nodes), offsetDelta, lineDelta, columnLine, columnDelta);
+    }
+
+    // Shifts the subtrees on stack, a stack instead of recursion because sums are as deep as they have terms
+    private static void shiftAll(ArrayList<ASTNode> stack, int offsetDelta, int lineDelta, int columnLine, int columnDelta) {
+        while (!stack.isEmpty()) {
+            ASTNode next = stack.remove(stack.size() - 1);
+            if (next == null) {
+                continue;
+            }
+            next.setPosition(shift(next.getStart(), offsetDelta, lineDelta, columnLine, columnDelta),
+                    shift(next.getStop(), offsetDelta, lineDelta, columnLine, columnDelta));
+            for (int i = 0, count = next.childCount(); i < count; i++) {
+                stack.add(next.childAt(i));
+            }
+        }
+    }
+
+    /**
+     * Formats a position as line:column
+     * @param position the packed position
+     * @return the line and column, or "?" when position is unknown
+     */
+    public static String toString(long position) {
+        return isKnown(position) ? line(position) + ":" + column(position) : "?";
+    }
+}
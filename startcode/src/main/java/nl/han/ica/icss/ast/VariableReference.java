@@ -16,6 +16,11 @@ public class VariableReference extends Expression {
 		return "VariableReference (" + name + ")";
 	}
 
+	@Override
+	public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+		return visitor.visitVariableReference(this, context);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -26,8 +31,7 @@ public class VariableReference extends Expression {
 	}
 
 	@Override
-	public int hashCode() {
-
-		return Objects.hash(name);
+	protected int localHash() {
+		return Objects.hashCode(name);
 	}
 }
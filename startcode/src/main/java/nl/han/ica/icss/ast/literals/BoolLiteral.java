@@ -1,7 +1,7 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
-import java.util.Objects;
 
 public class BoolLiteral extends Literal {
     public boolean value;
@@ -18,6 +18,11 @@ public class BoolLiteral extends Literal {
         return "Bool Literal (" + textValue + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitBoolLiteral(this, context);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -28,7 +33,7 @@ public class BoolLiteral extends Literal {
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(value);
+    protected int localHash() {
+        return Boolean.hashCode(value);
     }
 }
@@ -1,31 +1,50 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class ColorLiteral extends Literal {
-    public String value;
+    // The color as 0xrrggbb, written as #rrggbb only when it is shown
+    public int value;
 
-    public ColorLiteral(String value) {
+    public ColorLiteral(int value) {
         this.value = value;
     }
+    public ColorLiteral(String text) {
+        this.value = Integer.parseInt(text, 1, text.length(), 16);
+    }
     @Override
     public String getNodeLabel() {
-        return "Color literal (" + value + ")";
+        return "Color literal (" + toHexString() + ")";
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitColorLiteral(this, context);
+    }
+
+    /**
+     * Formats the color the way ICSS and CSS write it
+     * @return the color as #rrggbb, in lower case
+     */
+    public String toHexString() {
+        char[] hex = new char[7];
+        hex[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            hex[i] = Character.forDigit(value >> (6 - i) * 4 & 0xf, 16);
+        }
+        return new String(hex);
+    }
 
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+        return value == that.value;
     }
     @Override
-    public int hashCode() {
-
-        return Objects.hash(value);
+    protected int localHash() {
+        return Integer.hashCode(value);
     }
 }
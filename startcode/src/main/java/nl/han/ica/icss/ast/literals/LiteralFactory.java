@@ -0,0 +1,76 @@
+package nl.han.ica.icss.ast.literals;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared literals for the values that occur most often: TRUE and FALSE, small pixel, percentage and
+ * scalar values and the colors asked for before. The evaluator takes its results from here instead
+ * of allocating a literal for every one.
+ *
+ * A shared literal has no source position and may be in many trees and places at once, so its
+ * value, position and error must never be set. Hashing or comparing one writes nothing to it, so
+ * it holds no reference to the trees it is in. The parser does not use these: every literal it
+ * creates has a position of its own.
+ */
+public final class LiteralFactory {
+
+    private static final int MIN_SHARED = -128;
+    private static final int MAX_SHARED = 1024;
+    // Colors are shared until this many distinct ones were seen, after that new ones are allocated
+    private static final int MAX_SHARED_COLORS = 4096;
+
+    private static final BoolLiteral TRUE = new BoolLiteral(true);
+    private static final BoolLiteral FALSE = new BoolLiteral(false);
+    private static final PixelLiteral[] PIXELS = new PixelLiteral[MAX_SHARED - MIN_SHARED + 1];
+    private static final PercentageLiteral[] PERCENTAGES = new PercentageLiteral[MAX_SHARED - MIN_SHARED + 1];
+    private static final ScalarLiteral[] SCALARS = new ScalarLiteral[MAX_SHARED - MIN_SHARED + 1];
+    private static final ConcurrentHashMap<Integer, ColorLiteral> COLORS = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < PIXELS.length; i++) {
+            PIXELS[i] = new PixelLiteral(MIN_SHARED + i);
+            PERCENTAGES[i] = new PercentageLiteral(MIN_SHARED + i);
+            SCALARS[i] = new ScalarLiteral(MIN_SHARED + i);
+        }
+    }
+
+    private LiteralFactory() {
+    }
+
+    public static BoolLiteral bool(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    public static PixelLiteral pixel(int value) {
+        return isShared(value) ? PIXELS[value - MIN_SHARED] : new PixelLiteral(value);
+    }
+
+    public static PercentageLiteral percentage(int value) {
+        return isShared(value) ? PERCENTAGES[value - MIN_SHARED] : new PercentageLiteral(value);
+    }
+
+    public static ScalarLiteral scalar(int value) {
+        return isShared(value) ? SCALARS[value - MIN_SHARED] : new ScalarLiteral(value);
+    }
+
+    /**
+     * Returns a color literal, the same one for every call with the same rgb value
+     * as long as not too many distinct colors were asked for
+     * @param rgb the color as 0xrrggbb
+     * @return a literal that must not be changed
+     */
+    public static ColorLiteral color(int rgb) {
+        ColorLiteral color = COLORS.get(rgb);
+        if (color != null) {
+            return color;
+        }
+        if (COLORS.size() >= MAX_SHARED_COLORS) {
+            return new ColorLiteral(rgb);
+        }
+        return COLORS.computeIfAbsent(rgb, ColorLiteral::new);
+    }
+
+    private static boolean isShared(int value) {
+        return value >= MIN_SHARED && value <= MAX_SHARED;
+    }
+}
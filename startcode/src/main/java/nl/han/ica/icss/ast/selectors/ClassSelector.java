@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -16,6 +17,11 @@ public class ClassSelector extends Selector {
         return "ClassSelector " + cls;
     }
 
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitClassSelector(this, context);
+    }
+
     public String toString() {
         return cls;
     }
@@ -29,7 +35,7 @@ public class ClassSelector extends Selector {
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(cls);
+    protected int localHash() {
+        return Objects.hashCode(cls);
     }
 }
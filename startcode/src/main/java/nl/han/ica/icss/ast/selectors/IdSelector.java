@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -14,6 +15,12 @@ public class IdSelector extends Selector {
     public String getNodeLabel() {
         return "IdSelector " + id;
     }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitIdSelector(this, context);
+    }
+
     public String toString() {
         return id;
     }
@@ -28,7 +35,7 @@ public class IdSelector extends Selector {
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(id);
+    protected int localHash() {
+        return Objects.hashCode(id);
     }
 }
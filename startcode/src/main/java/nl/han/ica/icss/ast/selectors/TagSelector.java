@@ -1,5 +1,6 @@
 package nl.han.ica.icss.ast.selectors;
 
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Selector;
 
 import java.util.Objects;
@@ -14,6 +15,12 @@ public class TagSelector extends Selector {
     public String getNodeLabel() {
         return "TagSelector " + tag;
     }
+
+    @Override
+    public <R, C> R accept(ASTVisitor<R, C> visitor, C context) {
+        return visitor.visitTagSelector(this, context);
+    }
+
     public String toString() {
         return tag;
     }
@@ -28,8 +35,7 @@ public class TagSelector extends Selector {
     }
 
     @Override
-    public int hashCode() {
-
-        return Objects.hash(tag);
+    protected int localHash() {
+        return Objects.hashCode(tag);
     }
 }
@@ -1,7 +1,7 @@
 package nl.han.ica.icss.checker;
 
-import nl.han.ica.datastructures.HANLinkedList;
-import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.HANArrayStack;
+import nl.han.ica.datastructures.HANScope;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
@@ -10,195 +10,318 @@ import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Checker {
-    private IHANLinkedList<HashMap<String, ExpressionType>> variableTypes;
+    // Below this many style rules per task, checking in parallel costs more than it gains
+    private static final int MIN_RULES_PER_TASK = 64;
+    private static final int TASKS_PER_THREAD = 4;
+
+    private HANScope<String, ExpressionType> variableTypes;
+
+    // Checks statements and the expressions of variable assignments, sets errors on the nodes
+    private final ASTVisitor<Void, Void> statements = new StatementChecker();
+    // Determines the type of an expression, null when it has none
+    private final ASTVisitor<ExpressionType, Void> types = new ExpressionTypes();
+    // Only the outermost if clause in a rule body opens a scope, nested ones share it
+    private int ifDepth = 0;
+    // The type of every expression typed so far in this check, null types included
+    private final IdentityHashMap<Expression, ExpressionType> expressionTypes = new IdentityHashMap<>();
+    private final HANArrayStack<Expression> untyped = new HANArrayStack<>();
 
     public Checker() {
-        variableTypes = new HANLinkedList<>();
-        variableTypes.addFirst(new HashMap<>()); // Add global scope
+        variableTypes = new HANScope<>(); // Global scope
     }
 
     public void check(AST ast) {
-        checkStyleSheet(ast.root);
+        try {
+            ast.root.accept(statements, null);
+        } finally {
+            expressionTypes.clear();
+        }
     }
 
-    private void checkStyleSheet(Stylesheet node) {
-        for (ASTNode child : node.getChildren()) {
-            if (child instanceof Stylerule) {
-                enterScope();
-                checkStylerule((Stylerule) child);
-                exitScope();
-            } else if (child instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) child);
-            }
+    /**
+     * Checks one top-level statement as {@link #check(AST)} would as part of a stylesheet: with the
+     * global variables assigned by the statements checked before it, and adding the ones it assigns.
+     * Call it for every statement in order, so a stylesheet can be checked without all of it in memory.
+     * @param statement a top-level variable assignment or style rule
+     */
+    public void checkStatement(ASTNode statement) {
+        try {
+            statement.accept(statements, null);
+        } finally {
+            expressionTypes.clear();
         }
     }
 
-    private void checkVariableAssignment(VariableAssignment node) {
-        String variableName = node.name.name;
-        ExpressionType expressionType = determineExpressionType(node.expression);
+    /**
+     * Checks ast like {@link #check(AST)}, with the style rules checked at the same time on pool.
+     * The global variable assignments are checked first, in order. Each rule is then checked in
+     * a scope of its own on top of the global scope as it was at that rule, which is immutable, so
+     * rules do not depend on each other. Errors are set on the nodes as usual and reported to the
+     * {@link Diagnostics} of the calling thread once all rules are done, in the order check reports them.
+     * @param ast the tree to check
+     * @param pool the pool that checks the rules
+     */
+    public void checkParallel(AST ast, ForkJoinPool pool) {
+        ArrayList<ASTNode> body = ast.root.body;
+        int ruleCount = 0;
+        for (ASTNode child : body) {
+            if (child instanceof Stylerule) {
+                ruleCount++;
+            }
+        }
+        int rulesPerTask = Math.max(MIN_RULES_PER_TASK, ruleCount / (pool.getParallelism() * TASKS_PER_THREAD));
+        if (ruleCount < 2 * rulesPerTask) {
+            check(ast);
+            return;
+        }
 
-        variableTypes.getFirst().put(variableName, expressionType);
+        // The errors of every top-level statement, and the global scope each rule starts from
+        Diagnostics[] statementErrors = new Diagnostics[body.size()];
+        ArrayList<HANScope<String, ExpressionType>> ruleScopes = new ArrayList<>(Collections.nCopies(body.size(), null));
+        try {
+            for (int i = 0; i < body.size(); i++) {
+                ASTNode child = body.get(i);
+                statementErrors[i] = new Diagnostics();
+                if (child instanceof Stylerule) {
+                    ruleScopes.set(i, variableTypes);
+                } else {
+                    statementErrors[i].collect(() -> child.accept(statements, null));
+                }
+            }
+        } finally {
+            expressionTypes.clear();
+        }
 
-        checkExpression(node.expression);
-    }
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        int start = 0;
+        while (start < body.size()) {
+            int from = start;
+            int rules = 0;
+            while (start < body.size() && rules < rulesPerTask) {
+                if (body.get(start++) instanceof Stylerule) {
+                    rules++;
+                }
+            }
+            int to = start;
+            tasks.add(pool.submit(() -> {
+                Checker checker = new Checker();
+                try {
+                    for (int i = from; i < to; i++) {
+                        ASTNode child = body.get(i);
+                        if (child instanceof Stylerule) {
+                            checker.variableTypes = ruleScopes.get(i);
+                            statementErrors[i].collect(() -> child.accept(checker.statements, null));
+                        }
+                    }
+                } finally {
+                    checker.expressionTypes.clear();
+                }
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            task.join();
+        }
 
-    private void checkExpression(Expression expression) {
-        if (expression instanceof VariableReference) {
-            checkVariableReference((VariableReference) expression);
-        } else if (expression instanceof Operation) {
-            checkOperation((Operation) expression);
+        Diagnostics diagnostics = Diagnostics.current();
+        if (diagnostics != null) {
+            for (Diagnostics errors : statementErrors) {
+                List<ASTNode> nodes = errors.getNodes();
+                List<SemanticError> found = errors.getErrors();
+                for (int i = 0; i < found.size(); i++) {
+                    diagnostics.report(nodes.get(i), found.get(i));
+                }
+            }
         }
     }
 
-    private void checkVariableReference(VariableReference node) {
-        String variableName = node.name;
+    private class StatementChecker implements ASTVisitor<Void, Void> {
 
-        // CH01: Controleer of er geen variabelen worden gebruikt die niet gedefinieerd zijn.
-        // CH06: Controleer of variabelen enkel binnen hun scope gebruikt worden
-        if (!variableExistsInScope(variableName)) {
-            node.setError("Variable '" + variableName + "' is not defined in the current scope");
+        @Override
+        public Void visitStylesheet(Stylesheet node, Void context) {
+            for (ASTNode child : node.body) {
+                child.accept(this, null);
+            }
+            return null;
         }
-    }
 
-    private void checkStylerule(Stylerule node) {
-        this.checkRuleBody(node.body);
-    }
+        @Override
+        public Void visitStylerule(Stylerule node, Void context) {
+            enterScope();
+            for (ASTNode child : node.body) {
+                child.accept(this, null);
+            }
+            exitScope();
+            return null;
+        }
 
-    private void checkIfClause(IfClause child) {
-        ExpressionType expressionType = determineExpressionType(child.conditionalExpression);
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node, Void context) {
+            String variableName = node.name.name;
+            ExpressionType expressionType = determineExpressionType(node.expression);
 
-        // CH05: Controleer of de conditie van een if-clause een boolean is.
-        if (expressionType != ExpressionType.BOOL) {
-            child.conditionalExpression.setError("If clause condition must be of type bool");
-        }
+            variableTypes = variableTypes.define(variableName, expressionType);
 
-        for (ASTNode bodyChild : child.body) {
-            if (bodyChild instanceof Declaration) {
-                checkDeclaration((Declaration) bodyChild);
-            } else if (bodyChild instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) bodyChild);
-            } else if (bodyChild instanceof IfClause) {
-                checkIfClause((IfClause) bodyChild);
+            if (node.expression != null) {
+                node.expression.accept(this, null);
             }
+            return null;
         }
 
-        if (child.elseClause != null){
-            checkElseClause(child.elseClause);
-        }
-    }
+        @Override
+        public Void visitVariableReference(VariableReference node, Void context) {
+            String variableName = node.name;
 
-    private void checkElseClause(ElseClause elseClause) {
-        for (ASTNode child : elseClause.getChildren()) {
-            if (child instanceof Declaration) {
-                checkDeclaration((Declaration) child);
-            } else if (child instanceof VariableAssignment) {
-                checkVariableAssignment((VariableAssignment) child);
+            // CH01: Controleer of er geen variabelen worden gebruikt die niet gedefinieerd zijn.
+            // CH06: Controleer of variabelen enkel binnen hun scope gebruikt worden
+            if (!variableExistsInScope(variableName)) {
+                node.setError("Variable '" + variableName + "' is not defined in the current scope");
             }
+            return null;
         }
-    }
 
-    private void checkDeclaration(Declaration node) {
-        ExpressionType expressionType = determineExpressionType(node.expression);
+        @Override
+        public Void visitIfClause(IfClause node, Void context) {
+            if (ifDepth == 0) {
+                enterScope();
+            }
+            ifDepth++;
+            ExpressionType expressionType = determineExpressionType(node.conditionalExpression);
 
-        if (node.expression instanceof VariableReference){
-            checkVariableReference((VariableReference) node.expression);
-            if (node.expression.hasError()) { // If variable reference has error return to not display multiple errors
-                return;
+            // CH05: Controleer of de conditie van een if-clause een boolean is.
+            if (expressionType != ExpressionType.BOOL) {
+                node.conditionalExpression.setError("If clause condition must be of type bool");
             }
-        }
 
-        // CH04 - Controleer of bij declaraties het type van de value klopt met de property.
-        switch (node.property.name){
-        case "width":
-        case "height":
-        if (expressionType != ExpressionType.PIXEL && expressionType != ExpressionType.PERCENTAGE) {
-            node.setError("Property '" + node.property.name + "' can only be of type pixel or percentage literal");
-        }
-        break;
+            for (ASTNode bodyChild : node.body) {
+                bodyChild.accept(this, null);
+            }
 
-        case "color":
-        case "background-color":
-        if (expressionType != ExpressionType.COLOR) {
-            node.setError("Property '" + node.property.name + "' can only be of type color literal");
+            if (node.elseClause != null){
+                node.elseClause.accept(this, null);
+            }
+            ifDepth--;
+            if (ifDepth == 0) {
+                exitScope();
+            }
+            return null;
         }
-        break;
 
-        default:
-        node.setError("Property " + node.property.name + " is not a valid property");
-        break;
+        @Override
+        public Void visitElseClause(ElseClause node, Void context) {
+            for (ASTNode child : node.body) {
+                child.accept(this, null);
+            }
+            return null;
         }
-    }
 
-    private void checkRuleBody(ArrayList<ASTNode> body){
-        for (ASTNode node : body){
-            if (node instanceof Declaration){
-                checkDeclaration((Declaration) node);
-            } else if (node instanceof VariableAssignment){
-                checkVariableAssignment((VariableAssignment) node);
-            } else if (node instanceof IfClause){
-                enterScope();
-                checkIfClause((IfClause) node);
-                exitScope();
+        @Override
+        public Void visitDeclaration(Declaration node, Void context) {
+            ExpressionType expressionType = determineExpressionType(node.expression);
+
+            if (node.expression instanceof VariableReference){
+                node.expression.accept(this, null);
+                if (node.expression.hasError()) { // If variable reference has error return to not display multiple errors
+                    return null;
+                }
             }
-        }
-    }
 
-    private void checkOperation(Operation operation) {
-        if (operation instanceof MultiplyOperation) {
-            checkMultiplyOperation((MultiplyOperation) operation);
-        } else if (operation instanceof AddOperation) {
-            checkAddOperation((AddOperation) operation);
-        } else if (operation instanceof SubtractOperation) {
-            checkSubtractOperation((SubtractOperation) operation);
+            // CH04 - Controleer of bij declaraties het type van de value klopt met de property.
+            switch (node.property.name){
+            case "width":
+            case "height":
+            if (expressionType != ExpressionType.PIXEL && expressionType != ExpressionType.PERCENTAGE) {
+                node.setError("Property '" + node.property.name + "' can only be of type pixel or percentage literal");
+            }
+            break;
+
+            case "color":
+            case "background-color":
+            if (expressionType != ExpressionType.COLOR) {
+                node.setError("Property '" + node.property.name + "' can only be of type color literal");
+            }
+            break;
+
+            default:
+            node.setError("Property " + node.property.name + " is not a valid property");
+            break;
+            }
+            return null;
         }
-    }
 
-    private void checkMultiplyOperation(MultiplyOperation operation) {
+        @Override
+        public Void visitMultiplyOperation(MultiplyOperation operation, Void context) {
             ExpressionType lhsType = determineExpressionType(operation.lhs);
             ExpressionType rhsType = determineExpressionType(operation.rhs);
 
             // CH03: Controleer of er geen kleuren worden gebruikt in operaties (plus, min en keer).
             if (lhsType == ExpressionType.COLOR || rhsType == ExpressionType.COLOR){
                 operation.setError("Color may not be used in an multiply operation");
-                return;
+                return null;
             }
 
             // CH02: Controleer dat bij vermenigvuldigen minimaal een operand een scalaire waarde is.
             if (lhsType != ExpressionType.SCALAR && rhsType != ExpressionType.SCALAR) {
                 operation.setError("Multiply operation has invalid operands");
             }
+            return null;
         }
 
-    private void checkSubtractOperation(SubtractOperation operation) {
+        @Override
+        public Void visitSubtractOperation(SubtractOperation operation, Void context) {
             ExpressionType lhsType = determineExpressionType(operation.lhs);
             ExpressionType rhsType = determineExpressionType(operation.rhs);
 
             // CH03: Controleer of er geen kleuren worden gebruikt in operaties (plus, min en keer).
             if (lhsType == ExpressionType.COLOR || rhsType == ExpressionType.COLOR){
                 operation.setError("Color may not be used in an subtract operation");
-                return;
+                return null;
             }
 
             // CH02: Controleer of de operanden van de operaties plus en min van gelijk type zijn.
             if (lhsType != rhsType) {
                 operation.setError("Subtract operation has invalid operands");
             }
+            return null;
         }
 
-    private void checkAddOperation(AddOperation operation) {
-            if (operation.lhs instanceof Operation) {
-                checkOperation((Operation) operation.lhs);
-            } else if (operation.rhs instanceof Operation) {
-                checkOperation((Operation) operation.rhs);
+        @Override
+        public Void visitAddOperation(AddOperation operation, Void context) {
+            // The add operations below this one are checked first, innermost first. They are collected
+            // without recursion, so a long sum does not overflow the stack.
+            HANArrayStack<AddOperation> additions = new HANArrayStack<>();
+            Expression current = operation;
+            while (current instanceof AddOperation) {
+                AddOperation addition = (AddOperation) current;
+                additions.push(addition);
+                if (addition.lhs instanceof Operation) {
+                    current = addition.lhs;
+                } else if (addition.rhs instanceof Operation) {
+                    current = addition.rhs;
+                } else {
+                    current = null;
+                }
             }
+            if (current != null) {
+                current.accept(this, null);
+            }
+            while (!additions.isEmpty()) {
+                checkAddOperands(additions.pop());
+            }
+            return null;
+        }
 
+        private void checkAddOperands(AddOperation operation) {
             if (operation.lhs instanceof VariableReference) {
-                checkVariableReference((VariableReference) operation.lhs);
+                operation.lhs.accept(this, null);
             } else if (operation.rhs instanceof VariableReference) {
-                checkVariableReference((VariableReference) operation.rhs);
+                operation.rhs.accept(this, null);
             }
 
             ExpressionType lhsType = determineExpressionType(operation.lhs);
@@ -210,75 +333,127 @@ public class Checker {
                 return;
             }
 
-           // CH02: Controleer of de operanden van de operaties plus en min van gelijk type zijn.
+            // CH02: Controleer of de operanden van de operaties plus en min van gelijk type zijn.
             if (lhsType != rhsType) {
                 operation.setError("Can not add " + lhsType + " to " + rhsType + "");
             }
         }
-
-    private boolean variableExistsInScope(String variableName) {
-        for (int i = 0; i < variableTypes.getSize(); i++) {
-            HashMap<String, ExpressionType> scope = variableTypes.get(i); // Get scope
-            if (scope.containsKey(variableName)) { // If variable is found in scope
-                return true;
-            }
-        }
-        return false;
     }
 
-    private ExpressionType determineExpressionType(Expression expression) {
-        if (expression instanceof PixelLiteral) {
+    private class ExpressionTypes implements ASTVisitor<ExpressionType, Void> {
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node, Void context) {
             return ExpressionType.PIXEL;
-        } else if (expression instanceof ColorLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node, Void context) {
             return ExpressionType.COLOR;
-        } else if (expression instanceof BoolLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node, Void context) {
             return ExpressionType.BOOL;
-        } else if (expression instanceof PercentageLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node, Void context) {
             return ExpressionType.PERCENTAGE;
-        } else if (expression instanceof ScalarLiteral) {
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral node, Void context) {
             return ExpressionType.SCALAR;
-        } else if (expression instanceof VariableReference) {
-            VariableReference ref = new VariableReference(((VariableReference) expression).name);
-            return getVariableType(ref.name);
-        } else if (expression instanceof Operation) {
-            return determineOperationType((Operation) expression);
         }
-        return null;
-    }
 
-    private ExpressionType determineOperationType(Operation operation){
-        ExpressionType lhsType = determineExpressionType(operation.lhs);
-        ExpressionType rhsType = determineExpressionType(operation.rhs);
+        @Override
+        public ExpressionType visitVariableReference(VariableReference node, Void context) {
+            return getVariableType(node.name);
+        }
 
-        if (operation instanceof MultiplyOperation) {
+        @Override
+        public ExpressionType visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            ExpressionType lhsType = determineExpressionType(operation.lhs);
+            ExpressionType rhsType = determineExpressionType(operation.rhs);
             if (lhsType == ExpressionType.SCALAR) { // If left side is scalar
                 return rhsType;
             } else if (rhsType == ExpressionType.SCALAR) { // If right side is scalar
                 return lhsType;
             }
-        } else if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitAddOperation(AddOperation operation, Void context) {
+            return sameType(operation);
+        }
+
+        @Override
+        public ExpressionType visitSubtractOperation(SubtractOperation operation, Void context) {
+            return sameType(operation);
+        }
+
+        private ExpressionType sameType(Operation operation) {
+            ExpressionType lhsType = determineExpressionType(operation.lhs);
+            ExpressionType rhsType = determineExpressionType(operation.rhs);
             if (lhsType == rhsType) { // If left side is equal to right side
                 return lhsType;
             }
+            return null;
         }
-        return null;
     }
 
-    private ExpressionType getVariableType(String variableName) {
-        for (int i = 0; i < variableTypes.getSize(); i++) {
-            HashMap<String, ExpressionType> scope = variableTypes.get(i); // Get scope
-            if (scope.containsKey(variableName)) { // If variable is found in scope
-                return scope.get(variableName);
+    private boolean variableExistsInScope(String variableName) {
+        return variableTypes.isDefined(variableName); // Walks from the innermost scope outwards
+    }
+
+    /*
+     Types are computed once per expression: the first call types the whole subtree bottom-up,
+     after that every operation in it finds the types of its operands in expressionTypes.
+     An expression is typed when the statement it is in is checked, so with the scope of that statement.
+     */
+    private ExpressionType determineExpressionType(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        ExpressionType type = expressionTypes.get(expression);
+        if (type == null && !expressionTypes.containsKey(expression)) {
+            inferTypes(expression);
+            type = expressionTypes.get(expression);
+        }
+        return type;
+    }
+
+    // Types root and every untyped expression below it, operands before their operation and without recursion
+    private void inferTypes(Expression root) {
+        untyped.push(root);
+        while (!untyped.isEmpty()) {
+            Expression expression = untyped.peek();
+            boolean operandsTyped = true;
+            for (int i = 0, count = expression.childCount(); i < count; i++) {
+                Expression operand = (Expression) expression.childAt(i);
+                if (!expressionTypes.containsKey(operand)) {
+                    untyped.push(operand);
+                    operandsTyped = false;
+                }
+            }
+            if (operandsTyped) {
+                untyped.pop();
+                expressionTypes.put(expression, expression.accept(types, null));
             }
         }
-        return null;
+    }
+
+    private ExpressionType getVariableType(String variableName) {
+        return variableTypes.lookup(variableName); // Walks from the innermost scope outwards
     }
 
     private void enterScope() {
-        variableTypes.addFirst(new HashMap<>()); // Add new scope
+        variableTypes = variableTypes.enter(); // Fork a new scope, the enclosing scopes are shared
     }
 
     private void exitScope() {
-        variableTypes.removeFirst(); // Remove current scope
+        variableTypes = variableTypes.exit(); // Drop current scope
     }
 }
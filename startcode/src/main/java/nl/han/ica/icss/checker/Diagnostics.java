@@ -0,0 +1,91 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.ASTNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Collects semantic errors as they are set, so nobody has to search the tree for them afterwards.
+ *
+ * While {@link #collect(Runnable)} runs, every {@link ASTNode#setError(String)} on that thread
+ * appends the node and its error here, in the order they are set, and passes them to the
+ * listener if there is one. Errors set outside of collect are only stored on their node.
+ */
+public final class Diagnostics {
+
+    private static final ThreadLocal<Diagnostics> CURRENT = new ThreadLocal<>();
+
+    private final ArrayList<ASTNode> nodes = new ArrayList<>();
+    private final ArrayList<SemanticError> errors = new ArrayList<>();
+    private final BiConsumer<? super ASTNode, ? super SemanticError> listener;
+
+    public Diagnostics() {
+        this(null);
+    }
+
+    /**
+     * @param listener called with every error as it is reported, on the reporting thread, or null
+     */
+    public Diagnostics(BiConsumer<? super ASTNode, ? super SemanticError> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns where setError on this thread reports to
+     * @return the collector of the innermost running collect, or null outside of collect
+     */
+    public static Diagnostics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs work with this collecting the errors set on the current thread,
+     * the collector that was active before is restored afterwards
+     * @param work for instance a check of an AST
+     */
+    public void collect(Runnable work) {
+        Diagnostics previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            work.run();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public void report(ASTNode node, SemanticError error) {
+        nodes.add(node);
+        errors.add(error);
+        if (listener != null) {
+            listener.accept(node, error);
+        }
+    }
+
+    /**
+     * @return the errors in the order they were reported
+     */
+    public ArrayList<SemanticError> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    /**
+     * @return the nodes the errors were set on, in the same order as {@link #getErrors()}
+     */
+    public List<ASTNode> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    public int size() {
+        return errors.size();
+    }
+
+    public boolean isEmpty() {
+        return errors.isEmpty();
+    }
+}
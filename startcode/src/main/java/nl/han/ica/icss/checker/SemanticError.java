@@ -1,12 +1,29 @@
 package nl.han.ica.icss.checker;
 
+import nl.han.ica.icss.ast.SourcePosition;
+
 public class SemanticError {
 	public String description;
+	//Where the offending node starts, packed by SourcePosition
+	public long position;
 
 	public SemanticError(String description) {
+		this(description, SourcePosition.UNKNOWN);
+	}
+	public SemanticError(String description, long position) {
 		this.description = description;
+		this.position = position;
+	}
+	public int getLine() {
+		return SourcePosition.line(position);
+	}
+	public int getColumn() {
+		return SourcePosition.column(position);
 	}
 	public String toString() {
+		if (SourcePosition.isKnown(position)) {
+			return "ERROR at " + SourcePosition.toString(position) + ": " + description;
+		}
 		return "ERROR: " + description;
 	}
 }
@@ -8,52 +8,88 @@ import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 
 public class Generator {
+
+	// Writes the CSS of a node to the builder in the context
+	private final ASTVisitor<Void, StringBuilder> css = new CssWriter();
+
 	// GE01: Implementeer de generator in nl.han.ica.icss.generator.Generator die de AST naar een CSS2-compliant string omzet
 	public String generate(AST ast) {
-        return generateStylesheet(ast.root);
+		StringBuilder result = new StringBuilder();
+		ast.root.accept(css, result);
+		return result.toString();
 	}
 
-	private String generateStylesheet(Stylesheet node) {
-		StringBuilder result = new StringBuilder();
-		for (ASTNode child : node.getChildren()) {
-			if (child instanceof Stylerule) {
-				result.append(generateStylerule((Stylerule) child)).append("\n"); // Voor iedere stylerule een nieuwe regel
+	/*
+	 Appends the CSS of one evaluated style rule to result, to generate a stylesheet a rule at a time.
+	 */
+	public void generate(ASTNode statement, StringBuilder result) {
+		statement.accept(css, result);
+	}
+
+	private static class CssWriter implements ASTVisitor<Void, StringBuilder> {
+
+		@Override
+		public Void visitStylesheet(Stylesheet node, StringBuilder result) {
+			for (ASTNode child : node.body) {
+				child.accept(this, result);
 			}
+			return null;
 		}
-		return result.toString();
-	}
 
-	private String generateStylerule(Stylerule node) {
-		StringBuilder result = new StringBuilder();
+		@Override
+		public Void visitStylerule(Stylerule node, StringBuilder result) {
+			for (ASTNode child : node.selectors){
+				child.accept(this, result);
+				result.append(" {\n"); // Voor iedere selector een nieuwe regel
+			}
+			for (ASTNode declaration : node.body){
+				declaration.accept(this, result);
+				result.append("\n"); // Voor iedere declaration een nieuwe regel
+			}
 
-		for (ASTNode child : node.selectors){
-			result.append(child.toString()).append(" {\n"); // Voor iedere selector een nieuwe regel
+			result.append("}\n"); // Sluit de stylerule af
+			result.append("\n"); // Voor iedere stylerule een nieuwe regel
+			return null;
 		}
-		for (ASTNode declaration : node.body){
-			result.append(generateDeclaration((Declaration) declaration)).append("\n"); // Voor iedere declaration een nieuwe regel
+
+		@Override
+		public Void visitSelector(Selector node, StringBuilder result) {
+			result.append(node.toString());
+			return null;
 		}
 
-		result.append("}\n"); // Sluit de stylerule af
-		return result.toString();
-	}
+		@Override
+		public Void visitDeclaration(Declaration node, StringBuilder result) {
+			// GE02: Zorg dat de CSS met twee spaties inspringing per scopeniveau gegenereerd wordt.
+			result.append("  ").append(node.property.name).append(": ");
+			if (node.expression != null) {
+				node.expression.accept(this, result);
+			}
+			return null;
+		}
 
-	private String generateDeclaration(Declaration node) {
-		// GE02: Zorg dat de CSS met twee spaties inspringing per scopeniveau gegenereerd wordt.
-		return "  " + node.property.name + ": " + generateExpression(node.expression);
-	}
+		@Override
+		public Void visitColorLiteral(ColorLiteral node, StringBuilder result) {
+			result.append(node.toHexString());
+			return null;
+		}
 
-	private String generateExpression(Expression node) {
-		String result = "";
+		@Override
+		public Void visitPixelLiteral(PixelLiteral node, StringBuilder result) {
+			result.append(node.value).append("px");
+			return null;
+		}
+
+		@Override
+		public Void visitPercentageLiteral(PercentageLiteral node, StringBuilder result) {
+			result.append(node.value).append("%");
+			return null;
+		}
 
-		if (node instanceof ColorLiteral) {
-			result = ((ColorLiteral) node).value;
-		} else if (node instanceof PixelLiteral) {
-			result = ((PixelLiteral) node).value + "px";
-		} else if (node instanceof PercentageLiteral) {
-			result = ((PercentageLiteral) node).value + "%";
-		} else if (node instanceof BoolLiteral) {
-			result = String.valueOf(((BoolLiteral) node).value);
+		@Override
+		public Void visitBoolLiteral(BoolLiteral node, StringBuilder result) {
+			result.append(node.value);
+			return null;
 		}
-		return result;
 	}
 }
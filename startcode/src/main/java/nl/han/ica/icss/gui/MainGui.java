@@ -52,6 +52,7 @@ public class MainGui extends Application {
     public void start(Stage stage) {
         //Setup pipeline
         pipeline = new Pipeline();
+        Pipeline.warmUp();
 
         //Setup UI
         stage.setTitle(title);
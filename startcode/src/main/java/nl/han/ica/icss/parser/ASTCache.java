@@ -0,0 +1,105 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A directory of parsed ASTs, one file per source text, so a build can skip parsing sources that
+ * did not change since the last one. Files are named after a hash of the source and written with
+ * {@link AST#writeTo(OutputStream, long)}, which stores the same hash to detect a mismatch.
+ *
+ * A file that is missing, unreadable, from an older format or for other source is a miss, and
+ * a file that cannot be written is skipped: the cache never makes a parse fail.
+ */
+public final class ASTCache {
+
+    private static final String EXTENSION = ".icssast";
+
+    private final Path directory;
+
+    /**
+     * @param directory where the ASTs are kept, created when the first one is stored
+     */
+    public ASTCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the tree stored for source
+     * @param source the ICSS text
+     * @return a new copy of the tree parsed from source, or null when none is stored
+     */
+    public AST load(String source) {
+        long hash = hash(source);
+        try (InputStream in = Files.newInputStream(fileFor(hash))) {
+            return AST.readFrom(in, hash);
+        } catch (IOException | RuntimeException e) {
+            return null; // Not stored, or not readable as a tree for this source
+        }
+    }
+
+    /**
+     * Stores the tree parsed from source, call it before the tree is checked or transformed
+     * @param source the ICSS text
+     * @param ast the tree parsed from it without syntax errors
+     */
+    public void store(String source, AST ast) {
+        long hash = hash(source);
+        Path file = fileFor(hash);
+        Path temporary = null;
+        try {
+            Files.createDirectories(directory);
+            // Written next to the file and moved in place, so a reader never sees half a tree
+            temporary = Files.createTempFile(directory, Long.toHexString(hash), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                ast.writeTo(out, hash);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException ignored) {
+                    // Nothing else to clean up
+                }
+            }
+        }
+    }
+
+    /**
+     * Hashes source with the first 8 bytes of its SHA-256 digest
+     * @param source the ICSS text
+     * @return the hash
+     */
+    public static long hash(String source) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        long hash = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash = hash << 8 | (digest[i] & 0xff);
+        }
+        return hash;
+    }
+
+    private Path fileFor(long hash) {
+        return directory.resolve(String.format("%016x", hash) + EXTENSION);
+    }
+}
@@ -1,8 +1,7 @@
 package nl.han.ica.icss.parser;
 
 
-import com.sun.jdi.Value;
-import nl.han.ica.datastructures.HANStack;
+import nl.han.ica.datastructures.HANArrayStack;
 import nl.han.ica.datastructures.IHANStack;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
@@ -13,12 +12,20 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 import org.antlr.v4.runtime.ParserRuleContext;
-
-import javax.swing.text.html.HTML;
-import java.awt.*;
+import org.antlr.v4.runtime.Token;
 
 /**
  * This class extracts the ICSS Abstract Syntax Tree from the Antlr Parse tree.
+ *
+ * It can walk a finished parse tree, or be attached to the parser with addParseListener so the
+ * AST is built while parsing (the parse tree then does not have to be built at all). As a parse
+ * listener it does not get enter events for labelled alternatives, and the left operand of an
+ * operator is complete before the operator itself is entered. Therefore only the container rules
+ * are opened on enter; leaves and operations are created on exit, with expressions collected on
+ * a separate operand stack until the rule that owns them exits.
+ *
+ * Every node gets the source position of its first and last token (see {@link SourcePosition}),
+ * so the parse tree and tokens can be dropped as soon as parsing is done.
  */
 public class ASTListener extends nl.han.ica.icss.parser.ICSSBaseListener {
 
@@ -28,15 +35,29 @@ public class ASTListener extends nl.han.ica.icss.parser.ICSSBaseListener {
 	//Use this to keep track of the parent nodes when recursively traversing the ast
 	private IHANStack<ASTNode> currentContainer;
 
+	//Finished expressions that are not yet attached to their parent
+	private HANArrayStack<Expression> operands;
+
+	//Operand stack size when each open declaration, assignment or if-clause was entered
+	private int[] operandMarks;
+	private int markCount;
+
 	public ASTListener() {
 		ast = new AST();
-		currentContainer = new HANStack<>();
+		currentContainer = new HANArrayStack<>();
+		operands = new HANArrayStack<>();
+		operandMarks = new int[16];
 	}
 
 	public AST getAST() {
 		return ast;
 	}
 
+	// The stylesheet being built, between top-level rules of a streaming parse
+	Stylesheet getStylesheet() {
+		return (Stylesheet) currentContainer.peek();
+	}
+
 	@Override
 	public void enterStylesheet(nl.han.ica.icss.parser.ICSSParser.StylesheetContext ctx) {
 		Stylesheet stylesheet = new Stylesheet();
@@ -46,6 +67,12 @@ public class ASTListener extends nl.han.ica.icss.parser.ICSSBaseListener {
 	@Override
 	public void exitStylesheet(nl.han.ica.icss.parser.ICSSParser.StylesheetContext ctx) {
 		Stylesheet sheet = (Stylesheet) currentContainer.pop();
+		if (ctx != null) {
+			setPosition(sheet, ctx);
+		} else if (!sheet.body.isEmpty()) {
+			// Streaming parses feed the stylesheet rule by rule, without a context for the whole
+			sheet.setPosition(sheet.body.get(0).getStart(), sheet.body.get(sheet.body.size() - 1).getStop());
+		}
 		ast.setRoot(sheet);
 	}
 
@@ -58,199 +85,121 @@ public class ASTListener extends nl.han.ica.icss.parser.ICSSBaseListener {
 	@Override
 	public void exitStylerule(nl.han.ica.icss.parser.ICSSParser.StyleruleContext ctx) {
 		Stylerule rule = (Stylerule) currentContainer.pop();
+		setPosition(rule, ctx);
 		currentContainer.peek().addChild(rule);
 	}
 
-	@Override
-	public void enterTagSelector(nl.han.ica.icss.parser.ICSSParser.TagSelectorContext ctx) {
-		TagSelector tagSelector = new TagSelector(ctx.getText());
-		currentContainer.push(tagSelector);
-	}
-
 	@Override
 	public void exitTagSelector(nl.han.ica.icss.parser.ICSSParser.TagSelectorContext ctx) {
-		TagSelector tagSelector = (TagSelector) currentContainer.pop();
-		currentContainer.peek().addChild(tagSelector);
-	}
-
-	@Override
-	public void enterIdSelector(nl.han.ica.icss.parser.ICSSParser.IdSelectorContext ctx) {
-		IdSelector idSelector = new IdSelector(ctx.getText());
-		currentContainer.push(idSelector);
+		currentContainer.peek().addChild(setPosition(new TagSelector(text(ctx)), ctx));
 	}
 
 	@Override
 	public void exitIdSelector(nl.han.ica.icss.parser.ICSSParser.IdSelectorContext ctx) {
-		IdSelector idSelector = (IdSelector) currentContainer.pop();
-		currentContainer.peek().addChild(idSelector);
-	}
-
-	@Override
-	public void enterClassSelector(nl.han.ica.icss.parser.ICSSParser.ClassSelectorContext ctx) {
-		ClassSelector classSelector = new ClassSelector(ctx.getText());
-		currentContainer.push(classSelector);
+		currentContainer.peek().addChild(setPosition(new IdSelector(text(ctx)), ctx));
 	}
 
 	@Override
 	public void exitClassSelector(nl.han.ica.icss.parser.ICSSParser.ClassSelectorContext ctx) {
-		ClassSelector classSelector = (ClassSelector) currentContainer.pop();
-		currentContainer.peek().addChild(classSelector);
+		currentContainer.peek().addChild(setPosition(new ClassSelector(text(ctx)), ctx));
 	}
 
 	@Override
 	public void enterDeclaration(nl.han.ica.icss.parser.ICSSParser.DeclarationContext ctx) {
 		Declaration declaration = new Declaration();
 		currentContainer.push(declaration);
+		markOperands();
 	}
 
 	@Override
 	public void exitDeclaration(nl.han.ica.icss.parser.ICSSParser.DeclarationContext ctx) {
 		Declaration declaration = (Declaration) currentContainer.pop();
+		declaration.addChild(popOperand());
+		unmarkOperands();
+		setPosition(declaration, ctx);
 		currentContainer.peek().addChild(declaration);
 	}
 
-	@Override
-	public void enterProperty(nl.han.ica.icss.parser.ICSSParser.PropertyContext ctx) {
-		PropertyName propertyName = new PropertyName();
-		propertyName.name = ctx.getText();
-		currentContainer.push(propertyName);
-	}
-
 	@Override
 	public void exitProperty(nl.han.ica.icss.parser.ICSSParser.PropertyContext ctx) {
-		PropertyName propertyName = (PropertyName) currentContainer.pop();
-		currentContainer.peek().addChild(propertyName);
-	}
-
-	@Override
-	public void enterColor(nl.han.ica.icss.parser.ICSSParser.ColorContext ctx) {
-		Expression expression = new ColorLiteral(ctx.getText());
-		currentContainer.push(expression);
+		currentContainer.peek().addChild(setPosition(new PropertyName(text(ctx)), ctx));
 	}
 
 	@Override
 	public void exitColor(nl.han.ica.icss.parser.ICSSParser.ColorContext ctx) {
-		Expression expression = (Expression) currentContainer.pop();
-		currentContainer.peek().addChild(expression);
-	}
-
-	@Override
-	public void enterPixelSize(nl.han.ica.icss.parser.ICSSParser.PixelSizeContext ctx) {
-		Expression expression = new PixelLiteral(ctx.getText());
-		currentContainer.push(expression);
+		operands.push(setPosition(new ColorLiteral(text(ctx)), ctx));
 	}
 
 	@Override
 	public void exitPixelSize(nl.han.ica.icss.parser.ICSSParser.PixelSizeContext ctx) {
-		Expression expression = (Expression) currentContainer.pop();
-		currentContainer.peek().addChild(expression);
+		operands.push(setPosition(new PixelLiteral(text(ctx)), ctx));
 	}
 
 	@Override
-	public void enterPercentage(nl.han.ica.icss.parser.ICSSParser.PercentageContext ctx) {
-		Expression expression = new PercentageLiteral(ctx.getText());
-		currentContainer.push(expression);
+	public void exitPercentage(nl.han.ica.icss.parser.ICSSParser.PercentageContext ctx) {
+		operands.push(setPosition(new PercentageLiteral(text(ctx)), ctx));
 	}
 
 	@Override
-	public void exitPercentage(nl.han.ica.icss.parser.ICSSParser.PercentageContext ctx) {
-		Expression expression = (Expression) currentContainer.pop();
-		currentContainer.peek().addChild(expression);
+	public void exitBooleanLiteral(nl.han.ica.icss.parser.ICSSParser.BooleanLiteralContext ctx) {
+		operands.push(setPosition(new BoolLiteral(text(ctx)), ctx));
 	}
 
 	@Override
-	public void enterBooleanLiteral(nl.han.ica.icss.parser.ICSSParser.BooleanLiteralContext ctx) {
-		Expression expression = new BoolLiteral(ctx.getText());
-		currentContainer.push(expression);
+	public void exitScalar(nl.han.ica.icss.parser.ICSSParser.ScalarContext ctx) {
+		operands.push(setPosition(new ScalarLiteral(text(ctx)), ctx));
 	}
 
 	@Override
-	public void exitBooleanLiteral(nl.han.ica.icss.parser.ICSSParser.BooleanLiteralContext ctx) {
-		Expression expression = (Expression) currentContainer.pop();
-		currentContainer.peek().addChild(expression);
+	public void exitVariable(nl.han.ica.icss.parser.ICSSParser.VariableContext ctx) {
+		operands.push(setPosition(new VariableReference(text(ctx)), ctx));
 	}
 
 	@Override
 	public void enterVariableAssignment(nl.han.ica.icss.parser.ICSSParser.VariableAssignmentContext ctx) {
 		VariableAssignment variableAssignment = new VariableAssignment();
 		currentContainer.push(variableAssignment);
+		markOperands();
 	}
 
 	@Override
 	public void exitVariableAssignment(nl.han.ica.icss.parser.ICSSParser.VariableAssignmentContext ctx) {
 		VariableAssignment variableAssignment = (VariableAssignment) currentContainer.pop();
+		Expression expression = popOperand();
+		Expression name = popOperand();
+		if (name instanceof VariableReference) {
+			variableAssignment.addChild(name).addChild(expression);
+		} else if (expression instanceof VariableReference) {
+			variableAssignment.addChild(expression); // Only the name was parsed
+		}
+		unmarkOperands();
+		setPosition(variableAssignment, ctx);
 		currentContainer.peek().addChild(variableAssignment);
 	}
 
 	@Override
-	public void enterVariable(nl.han. ica.icss.parser.ICSSParser.VariableContext ctx) {
-		VariableReference variableReference = new VariableReference(ctx.getText());
-		currentContainer.push(variableReference);
-	}
-
-	@Override
-	public void exitVariable(nl.han.ica.icss.parser.ICSSParser.VariableContext ctx) {
-		VariableReference variableReference = (VariableReference) currentContainer.pop();
-		currentContainer.peek().addChild(variableReference);
-	}
-
-	@Override
-	public void enterScalar(nl.han.ica.icss.parser.ICSSParser.ScalarContext ctx) {
-		ScalarLiteral scalarLiteral = new ScalarLiteral(ctx.getText());
-		currentContainer.push(scalarLiteral);
-	}
-
-	@Override
-	public void exitScalar(nl.han.ica.icss.parser.ICSSParser.ScalarContext ctx) {
-		ScalarLiteral scalarLiteral = (ScalarLiteral) currentContainer.pop();
-		currentContainer.peek().addChild(scalarLiteral);
-	}
-
-	@Override
-	public void enterAddExpression(nl.han.ica.icss.parser.ICSSParser.AddExpressionContext ctx) {
-		AddOperation addOperation = new AddOperation();
-		currentContainer.push(addOperation);
-	}
-
-	@Override
-	public void exitAddExpression(nl.han.ica.icss.parser.ICSSParser.AddExpressionContext ctx) {
-		AddOperation addOperation = (AddOperation) currentContainer.pop();
-		currentContainer.peek().addChild(addOperation);
-	}
-
-	@Override
-	public void enterSubtractExpression(nl.han.ica.icss.parser.ICSSParser.SubtractExpressionContext ctx) {
-		SubtractOperation subtractOperation = new SubtractOperation();
-		currentContainer.push(subtractOperation);
-	}
-
-	@Override
-	public void exitSubtractExpression(nl.han.ica.icss.parser.ICSSParser.SubtractExpressionContext ctx) {
-		SubtractOperation subtractOperation = (SubtractOperation) currentContainer.pop();
-		currentContainer.peek().addChild(subtractOperation);
-	}
-
-	@Override
-	public void enterMultiplyExpression(nl.han.ica.icss.parser.ICSSParser.MultiplyExpressionContext ctx) {
-		MultiplyOperation multiplyOperation = new MultiplyOperation();
-		currentContainer.push(multiplyOperation);
+	public void exitAddOrSubtractExpression(nl.han.ica.icss.parser.ICSSParser.AddOrSubtractExpressionContext ctx) {
+		pushOperation(ctx.op.getType() == ICSSParser.PLUS ? new AddOperation() : new SubtractOperation());
 	}
 
 	@Override
 	public void exitMultiplyExpression(nl.han.ica.icss.parser.ICSSParser.MultiplyExpressionContext ctx) {
-		MultiplyOperation multiplyOperation = (MultiplyOperation) currentContainer.pop();
-		currentContainer.peek().addChild(multiplyOperation);
+		pushOperation(new MultiplyOperation());
 	}
 
 	@Override
 	public void enterIf_clause(nl.han.ica.icss.parser.ICSSParser.If_clauseContext ctx) {
 		IfClause ifClause = new IfClause();
 		currentContainer.push(ifClause);
+		markOperands();
 	}
 
 	@Override
 	public void exitIf_clause(nl.han.ica.icss.parser.ICSSParser.If_clauseContext ctx) {
 		IfClause ifClause = (IfClause) currentContainer.pop();
+		ifClause.addChild(popOperand());
+		unmarkOperands();
+		setPosition(ifClause, ctx);
 		currentContainer.peek().addChild(ifClause);
 	}
 
@@ -263,6 +212,58 @@ public class ASTListener extends nl.han.ica.icss.parser.ICSSBaseListener {
 	@Override
 	public void exitElse_clause(nl.han.ica.icss.parser.ICSSParser.Else_clauseContext ctx) {
 		ElseClause elseClause = (ElseClause) currentContainer.pop();
+		setPosition(elseClause, ctx);
 		currentContainer.peek().addChild(elseClause);
 	}
-}
\ No newline at end of file
+
+	private void pushOperation(Operation operation) {
+		Expression rhs = popOperand();
+		Expression lhs = popOperand();
+		operation.addChild(lhs).addChild(rhs);
+		// The context of a left-recursive alternative has no reliable stop token in a parse listener
+		if (lhs != null && rhs != null) {
+			operation.setPosition(lhs.getStart(), rhs.getStop());
+		}
+		operands.push(operation);
+	}
+
+	// Returns null instead of taking an operand that belongs to an enclosing rule (after a syntax error)
+	private Expression popOperand() {
+		if (markCount > 0 && operands.getSize() <= operandMarks[markCount - 1]) {
+			return null;
+		}
+		return operands.pop();
+	}
+
+	private void markOperands() {
+		if (markCount == operandMarks.length) {
+			operandMarks = java.util.Arrays.copyOf(operandMarks, markCount * 2);
+		}
+		operandMarks[markCount++] = operands.getSize();
+	}
+
+	// Drops operands that error recovery left behind
+	private void unmarkOperands() {
+		int mark = operandMarks[--markCount];
+		while (operands.getSize() > mark) {
+			operands.pop();
+		}
+	}
+
+	private static <T extends ASTNode> T setPosition(T node, ParserRuleContext ctx) {
+		Token start = ctx.getStart();
+		Token stop = ctx.getStop();
+		if (stop == null || stop.getTokenIndex() < start.getTokenIndex()) {
+			stop = start; // The rule matched nothing after a syntax error
+		}
+		int stopLength = Math.max(0, stop.getStopIndex() - stop.getStartIndex());
+		node.setPosition(SourcePosition.of(start.getStartIndex(), start.getLine(), start.getCharPositionInLine()),
+				SourcePosition.of(stop.getStartIndex() + stopLength, stop.getLine(), stop.getCharPositionInLine() + stopLength));
+		return node;
+	}
+
+	// All leaf rules match a single token; its text is available in both listener modes
+	private static String text(ParserRuleContext ctx) {
+		return ctx.getStart().getText();
+	}
+}
@@ -0,0 +1,69 @@
+package nl.han.ica.icss.parser;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+
+import java.util.Locale;
+
+/**
+ * The prediction statistics ANTLR's profiler gathered for each decision of the grammar during a
+ * parse: how often it was made, how far SLL prediction had to look ahead, how often it had to fall
+ * back to full-context LL prediction and how many ambiguities that found. Decisions with a
+ * lookahead above 1 or any LL fallback are the places where the grammar costs prediction time.
+ */
+public class DecisionProfile {
+
+    private static final String HEADER_FORMAT = "%-8s %-20s %11s %9s %9s %9s %12s %8s %11s %9s %6s%n";
+    private static final String ROW_FORMAT = "%-8d %-20s %11d %9.3f %9.2f %9d %12d %8d %11d %9d %6d%n";
+
+    private final DecisionInfo[] decisions;
+    private final String[] decisionRules;
+
+    DecisionProfile(Parser parser) {
+        this.decisions = parser.getParseInfo().getDecisionInfo();
+        this.decisionRules = new String[decisions.length];
+        for (int i = 0; i < decisions.length; i++) {
+            int ruleIndex = parser.getATN().getDecisionState(i).ruleIndex;
+            decisionRules[i] = parser.getRuleNames()[ruleIndex];
+        }
+    }
+
+    public DecisionInfo[] getDecisions() {
+        return decisions;
+    }
+
+    /**
+     * Returns the grammar rule a decision belongs to
+     * @param decision the decision number
+     * @return the name of the rule
+     */
+    public String getRule(int decision) {
+        return decisionRules[decision];
+    }
+
+    /**
+     * Formats the decisions that were made at least once as a table, one row per decision
+     * @return the table, with a header line
+     */
+    public String toTable() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(Locale.ROOT, HEADER_FORMAT, "decision", "rule", "invocations", "time (ms)",
+                "SLL k avg", "SLL k max", "LL fallbacks", "LL k max", "ambiguities", "ctx sens.", "errors"));
+        for (DecisionInfo decision : decisions) {
+            if (decision.invocations == 0) {
+                continue;
+            }
+            table.append(String.format(Locale.ROOT, ROW_FORMAT, decision.decision, decisionRules[decision.decision],
+                    decision.invocations, decision.timeInPrediction / 1_000_000.0,
+                    (double) decision.SLL_TotalLook / decision.invocations, decision.SLL_MaxLook,
+                    decision.LL_Fallback, decision.LL_MaxLook, decision.ambiguities.size(),
+                    decision.contextSensitivities.size(), decision.errors.size()));
+        }
+        return table.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toTable();
+    }
+}
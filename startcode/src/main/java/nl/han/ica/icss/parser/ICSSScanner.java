@@ -0,0 +1,261 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.SourcePosition;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Hand-written lexer for {@link RecursiveDescentParser}. It recognises the same tokens as the
+ * lexer rules in ICSS.g4 (longest match, earlier rule wins a tie) and uses the token types of
+ * the generated {@link ICSSLexer}. Only the current token is kept, as a type and a character
+ * range, so lexing allocates nothing; text is only cut out for tokens that become AST nodes.
+ */
+final class ICSSScanner {
+
+    private final CharSequence input;
+    private final int length;
+    private final ANTLRErrorListener errorListener;
+
+    private int pos;
+    private int line = 1;
+    private int lineStart;
+
+    // The current token
+    private int type;
+    private int start;
+    private int end;
+    private int tokenLine;
+    private int tokenColumn;
+    // Last character of the token before the current one
+    private long previousStop = SourcePosition.UNKNOWN;
+
+    ICSSScanner(CharSequence input, ANTLRErrorListener errorListener) {
+        this.input = input;
+        this.length = input.length();
+        this.errorListener = errorListener;
+        next();
+    }
+
+    int type() {
+        return type;
+    }
+
+    int line() {
+        return tokenLine;
+    }
+
+    int column() {
+        return tokenColumn;
+    }
+
+    long startPosition() {
+        return SourcePosition.of(start, tokenLine, tokenColumn);
+    }
+
+    long stopPosition() {
+        int length = Math.max(0, end - start - 1);
+        return SourcePosition.of(start + length, tokenLine, tokenColumn + length);
+    }
+
+    long previousStop() {
+        return previousStop;
+    }
+
+    String text() {
+        return input.subSequence(start, end).toString();
+    }
+
+    int intValue(int suffixLength) {
+        return Integer.parseInt(input, start, end - suffixLength, 10);
+    }
+
+    // The rgb value of a COLOR token, the digits after the '#'
+    int colorValue() {
+        return Integer.parseInt(input, start + 1, end, 16);
+    }
+
+    /**
+     * The token as ANTLR prints it in error messages
+     */
+    String display() {
+        return type == Token.EOF ? "'<EOF>'" : "'" + text() + "'";
+    }
+
+    /**
+     * Moves to the next token, reporting and skipping characters that do not start one
+     */
+    void next() {
+        if (type != Token.EOF && end > start) {
+            previousStop = stopPosition();
+        }
+        while (true) {
+            skipWhitespace();
+            start = pos;
+            tokenLine = line;
+            tokenColumn = pos - lineStart;
+            if (pos == length) {
+                type = Token.EOF;
+                end = pos;
+                return;
+            }
+            type = scan();
+            if (type != Token.INVALID_TYPE) {
+                end = pos;
+                return;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            char c = input.charAt(pos);
+            if (c == '\n') {
+                line++;
+                lineStart = pos + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private int scan() {
+        char c = input.charAt(pos++);
+        switch (c) {
+            case '[': return ICSSLexer.BOX_BRACKET_OPEN;
+            case ']': return ICSSLexer.BOX_BRACKET_CLOSE;
+            case '{': return ICSSLexer.OPEN_BRACE;
+            case '}': return ICSSLexer.CLOSE_BRACE;
+            case ';': return ICSSLexer.SEMICOLON;
+            case '+': return ICSSLexer.PLUS;
+            case '-': return ICSSLexer.MIN;
+            case '*': return ICSSLexer.MUL;
+            case ':':
+                if (pos < length && input.charAt(pos) == '=') {
+                    pos++;
+                    return ICSSLexer.ASSIGNMENT_OPERATOR;
+                }
+                return ICSSLexer.COLON;
+            case '#': return scanHash();
+            case '.':
+                if (scanWhile(pos, ICSSScanner::isLowerIdentPart) == pos) {
+                    return fail();
+                }
+                pos = scanWhile(pos, ICSSScanner::isLowerIdentPart);
+                return ICSSLexer.CLASS_IDENT;
+            default:
+                if (isDigit(c)) {
+                    return scanNumber();
+                }
+                if (c >= 'a' && c <= 'z') {
+                    pos = scanWhile(pos, ICSSScanner::isLowerIdentPart);
+                    return keywordOr(ICSSLexer.LOWER_IDENT);
+                }
+                if (c >= 'A' && c <= 'Z') {
+                    return scanCapital();
+                }
+                pos--;
+                return fail();
+        }
+    }
+
+    private int scanHash() {
+        int identEnd = scanWhile(pos, ICSSScanner::isLowerIdentPart);
+        if (identEnd == pos) {
+            return fail();
+        }
+        // COLOR and ID_IDENT both match '#' plus six hex digits, COLOR is declared first
+        boolean color = identEnd - pos == 6 && scanWhile(pos, ICSSScanner::isHexDigit) == identEnd;
+        pos = identEnd;
+        return color ? ICSSLexer.COLOR : ICSSLexer.ID_IDENT;
+    }
+
+    private int scanNumber() {
+        pos = scanWhile(pos, ICSSScanner::isDigit);
+        if (pos + 1 < length && input.charAt(pos) == 'p' && input.charAt(pos + 1) == 'x') {
+            pos += 2;
+            return ICSSLexer.PIXELSIZE;
+        }
+        if (pos < length && input.charAt(pos) == '%') {
+            pos++;
+            return ICSSLexer.PERCENTAGE;
+        }
+        return ICSSLexer.SCALAR;
+    }
+
+    private int scanCapital() {
+        pos = scanWhile(pos, ICSSScanner::isVarIdentPart);
+        return keywordOr(ICSSLexer.VAR_IDENT);
+    }
+
+    private int keywordOr(int identType) {
+        int tokenLength = pos - start;
+        if (tokenLength == 2 && matches("if")) {
+            return ICSSLexer.IF;
+        }
+        if (tokenLength == 4 && matches("else")) {
+            return ICSSLexer.ELSE;
+        }
+        if (tokenLength == 4 && matches("TRUE")) {
+            return ICSSLexer.TRUE;
+        }
+        if (tokenLength == 5 && matches("FALSE")) {
+            return ICSSLexer.FALSE;
+        }
+        return identType;
+    }
+
+    private boolean matches(String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (input.charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Like ANTLR: report the characters read so far including the offending one, then skip them
+    private int fail() {
+        int offending = Math.min(pos + 1, length);
+        if (errorListener != null) {
+            String text = input.subSequence(start, offending).toString()
+                    .replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
+            errorListener.syntaxError(null, null, tokenLine, tokenColumn,
+                    "token recognition error at: '" + text + "'", null);
+        }
+        if (offending > pos && input.charAt(pos) == '\n') {
+            line++;
+            lineStart = offending;
+        }
+        pos = offending;
+        return Token.INVALID_TYPE;
+    }
+
+    private int scanWhile(int from, CharClass charClass) {
+        int i = from;
+        while (i < length && charClass.contains(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private interface CharClass {
+        boolean contains(char c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f');
+    }
+
+    private static boolean isLowerIdentPart(char c) {
+        return (c >= 'a' && c <= 'z') || isDigit(c) || c == '-';
+    }
+
+    private static boolean isVarIdentPart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '-';
+    }
+}
@@ -0,0 +1,251 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.SourcePosition;
+import nl.han.ica.icss.ast.Stylesheet;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Keeps the AST of a stylesheet up to date while its text is edited. The text is divided into
+ * segments, one per top-level construct (see {@link TopLevelScanner}), and every segment is parsed
+ * on its own. An edit re-parses only the segments it touches, plus the ones after it until the
+ * segment boundaries are the same as before the edit; the nodes of all other segments are kept.
+ *
+ * Node positions are those in the whole text. After an edit that changes the length of the text,
+ * the positions of all nodes that follow it are moved along. That is cheap integer work next to
+ * parsing, but it is done for every node after the edit, so an edit near the start of a large
+ * stylesheet costs more than one near its end.
+ *
+ * The returned AST and its stylesheet are the same objects after every edit, only the body changes.
+ * The checker and the evaluator change nodes in place, so run them on a tree that is not edited
+ * any further.
+ */
+public class IncrementalParser {
+
+    private final StringBuilder text = new StringBuilder();
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private final AST ast = new AST();
+
+    /**
+     * Parses input from scratch, forgetting any earlier text
+     * @param input the ICSS source
+     * @return the AST of input
+     */
+    public AST parse(String input) {
+        text.setLength(0);
+        text.append(input);
+        segments.clear();
+        ast.root.body.clear();
+        int start = 0;
+        long lineAndColumn = lineAndColumn(1, 0);
+        while (start < text.length()) {
+            int end = TopLevelScanner.nextBoundary(text, start);
+            Segment segment = parseSegment(start, end, lineAndColumn);
+            segments.add(segment);
+            ast.root.body.addAll(segment.nodes);
+            lineAndColumn = advance(start, end, lineAndColumn);
+            start = end;
+        }
+        ast.root.invalidateHash();
+        return ast;
+    }
+
+    /**
+     * Replaces length characters at offset with replacement and updates the AST
+     * @param offset where the edit starts
+     * @param length how many characters are replaced
+     * @param replacement the new text
+     * @return the AST of the edited text
+     */
+    public AST edit(int offset, int length, String replacement) {
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + length + " outside text of length " + text.length());
+        }
+        int oldEditEnd = offset + length;
+        int newEditEnd = offset + replacement.length();
+        int delta = replacement.length() - length;
+
+        // Boundaries before the edit cannot move: re-scan from the start of the segment holding offset
+        int first = segmentAt(offset);
+        int next = first + 1;
+        int start = segments.isEmpty() ? 0 : segments.get(first).start;
+        long lineAndColumn = segments.isEmpty() ? lineAndColumn(1, 0) : segments.get(first).lineAndColumn;
+
+        // Where the text after the edit was and will be, to move the positions in it
+        long atOffset = advance(start, offset, lineAndColumn);
+        long oldEnd = advance(offset, oldEditEnd, atOffset);
+        text.replace(offset, oldEditEnd, replacement);
+        long newEnd = advance(offset, newEditEnd, atOffset);
+
+        List<Segment> fresh = new ArrayList<>();
+        while (start < text.length()) {
+            int end = TopLevelScanner.nextBoundary(text, start);
+            fresh.add(parseSegment(start, end, lineAndColumn));
+            lineAndColumn = advance(start, end, lineAndColumn);
+            start = end;
+            if (start >= newEditEnd) {
+                while (next < segments.size() && (segments.get(next).start < oldEditEnd || segments.get(next).start + delta < start)) {
+                    next++;
+                }
+                // The text from here on is unchanged and starts at the same depth, so are its segments
+                if (next < segments.size() && segments.get(next).start + delta == start) {
+                    break;
+                }
+            }
+        }
+        if (start >= text.length()) {
+            next = segments.size();
+        }
+        replaceSegments(Math.min(first, segments.size()), next, fresh);
+        moveSegments(first + fresh.size(), delta, oldEnd, newEnd);
+        return ast;
+    }
+
+    public AST getAST() {
+        return ast;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    /**
+     * Returns the syntax errors of all segments, in source order
+     * @return the current syntax errors
+     */
+    public List<String> getErrors() {
+        List<String> errors = new ArrayList<>();
+        for (Segment segment : segments) {
+            errors.addAll(segment.errors);
+        }
+        return errors;
+    }
+
+    // Swaps segments [from, to) for fresh ones, in the segment list and in the stylesheet body
+    private void replaceSegments(int from, int to, List<Segment> fresh) {
+        int bodyIndex = 0;
+        for (int i = 0; i < from; i++) {
+            bodyIndex += segments.get(i).nodes.size();
+        }
+        int removed = 0;
+        for (int i = from; i < to; i++) {
+            removed += segments.get(i).nodes.size();
+        }
+        List<ASTNode> added = new ArrayList<>();
+        for (Segment segment : fresh) {
+            added.addAll(segment.nodes);
+        }
+        Stylesheet stylesheet = ast.root;
+        stylesheet.body.subList(bodyIndex, bodyIndex + removed).clear();
+        stylesheet.body.addAll(bodyIndex, added);
+        stylesheet.invalidateHash();
+
+        segments.subList(from, to).clear();
+        segments.addAll(from, fresh);
+    }
+
+    // Moves the segments from index on, and their nodes, from after the old end of an edit to after its new end
+    private void moveSegments(int from, int delta, long oldEnd, long newEnd) {
+        int columnLine = line(oldEnd);
+        int lineDelta = line(newEnd) - columnLine;
+        int columnDelta = column(newEnd) - column(oldEnd);
+        boolean positionsMove = delta != 0 || lineDelta != 0 || columnDelta != 0;
+        List<ASTNode> moved = new ArrayList<>();
+        for (int i = from; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            segment.start += delta;
+            int line = line(segment.lineAndColumn);
+            int column = column(segment.lineAndColumn);
+            segment.lineAndColumn = lineAndColumn(line + lineDelta, line == columnLine ? column + columnDelta : column);
+            if (positionsMove) {
+                moved.addAll(segment.nodes);
+            }
+        }
+        // Every node after the edit, all with one stack
+        SourcePosition.shift(moved, delta, lineDelta, columnLine, columnDelta);
+    }
+
+    // The index of the last segment starting at or before offset
+    private int segmentAt(int offset) {
+        int low = 0;
+        int high = segments.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (segments.get(middle).start <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private Segment parseSegment(int start, int end, long lineAndColumn) {
+        if (TopLevelScanner.isBlank(text, start, end)) {
+            return new Segment(start, lineAndColumn, new ArrayList<>(), Collections.emptyList());
+        }
+        List<String> errors = new ArrayList<>();
+        AST segmentAst = ParseContext.forCurrentThread().parse(CharStreams.fromString(text.substring(start, end)),
+                new BaseErrorListener() {
+                    @Override
+                    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                            int charPositionInLine, String msg, RecognitionException e) {
+                        errors.add(msg);
+                    }
+                });
+        int line = line(lineAndColumn);
+        int column = column(lineAndColumn);
+        SourcePosition.shift(segmentAst.root.body, start, line - 1, 1, column);
+        return new Segment(start, lineAndColumn, segmentAst.root.body, errors);
+    }
+
+    // The line and column at offset to, counting from the given line and column at offset from
+    private long advance(int from, int to, long lineAndColumn) {
+        int line = line(lineAndColumn);
+        int column = column(lineAndColumn);
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+        }
+        return lineAndColumn(line, column);
+    }
+
+    // Unlike SourcePosition these do not saturate, columns after long lines must stay exact
+    private static long lineAndColumn(int line, int column) {
+        return (long) line << 32 | column;
+    }
+
+    private static int line(long lineAndColumn) {
+        return (int) (lineAndColumn >>> 32);
+    }
+
+    private static int column(long lineAndColumn) {
+        return (int) lineAndColumn;
+    }
+
+    private static class Segment {
+        private int start;
+        private long lineAndColumn;
+        private final ArrayList<ASTNode> nodes;
+        private final List<String> errors;
+
+        Segment(int start, long lineAndColumn, ArrayList<ASTNode> nodes, List<String> errors) {
+            this.start = start;
+            this.lineAndColumn = lineAndColumn;
+            this.nodes = nodes;
+            this.errors = errors;
+        }
+    }
+}
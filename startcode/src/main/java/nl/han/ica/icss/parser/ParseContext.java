@@ -0,0 +1,414 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.SourcePosition;
+import nl.han.ica.icss.ast.Stylesheet;
+import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * A lexer, token stream and parser that are created once and reset for every input.
+ * Building these objects (and the ATN simulators inside them) is a large part of the
+ * cost of parsing a small stylesheet, so callers that parse often should reuse a context.
+ *
+ * A context is not thread-safe; use {@link #forCurrentThread()} to get one per thread.
+ * The DFA cache that ANTLR builds up while predicting is static and shared by all contexts,
+ * {@link #warmUp()} fills it before the first real input arrives.
+ *
+ * By default input is parsed in two stages: first with the cheaper SLL prediction mode and
+ * an error strategy that bails out on the first problem, and only when that fails again from
+ * the start with full LL prediction and the normal error reporting. Valid input never needs
+ * the second stage, invalid input gets exactly the errors a plain LL parse reports.
+ *
+ * {@link #parseStreaming(CharStream, ANTLRErrorListener)} parses input that does not fit in
+ * memory: it reads from an unbuffered stream and builds the AST one top-level rule at a time.
+ *
+ * {@link #parseParallel(String, ANTLRErrorListener, ForkJoinPool)} splits large input between
+ * top-level constructs and parses the parts at the same time, each on its worker's own context.
+ *
+ * The AST is built in the same pass as the parse: the {@link ASTListener} is attached as a parse
+ * listener and no parse tree is kept. {@link #setBuildParseTree(boolean)} switches back to building
+ * the full parse tree first and walking it afterwards.
+ */
+public class ParseContext {
+
+    private static final ThreadLocal<ParseContext> CONTEXTS = ThreadLocal.withInitial(ParseContext::new);
+    private static final String[] WARM_UP_RESOURCES = {"level0.icss", "level1.icss", "level2.icss", "level3.icss"};
+    private static final int WARM_UP_ROUNDS = 20;
+    // Tokens of an unbuffered stream must carry their own text, the characters are gone once consumed
+    private static final CommonTokenFactory COPYING_TOKEN_FACTORY = new CommonTokenFactory(true);
+    // Below this many characters per part, splitting costs more than parsing in parallel gains
+    private static final int MIN_CHUNK_SIZE = 16 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private final ICSSLexer lexer;
+    private final CommonTokenStream tokens;
+    private final ICSSParser parser;
+    private final DeferredErrors deferredLexerErrors = new DeferredErrors();
+    private boolean twoStage = true;
+    private boolean buildParseTree = false;
+    private boolean profile = false;
+    private DecisionProfile lastProfile;
+
+    public ParseContext() {
+        lexer = new ICSSLexer(null);
+        tokens = new CommonTokenStream(lexer);
+        parser = new ICSSParser(tokens);
+        lexer.removeErrorListeners();
+        parser.removeErrorListeners();
+    }
+
+    /**
+     * Returns the parse context of the calling thread
+     * @return a context that only the calling thread uses
+     */
+    public static ParseContext forCurrentThread() {
+        return CONTEXTS.get();
+    }
+
+    /**
+     * Parses the bundled example stylesheets a number of times so the shared DFA cache
+     * is populated and the parser code is compiled before the first real input.
+     */
+    public static void warmUp() {
+        ParseContext context = forCurrentThread();
+        String[] sources = new String[WARM_UP_RESOURCES.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = readResource(WARM_UP_RESOURCES[i]);
+        }
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (String source : sources) {
+                context.parse(CharStreams.fromString(source), null);
+            }
+        }
+    }
+
+    /**
+     * Switches the SLL fast path on or off. When off, every input is parsed with full LL prediction.
+     * @param twoStage true to try SLL first (the default), false to always use LL
+     */
+    public void setTwoStage(boolean twoStage) {
+        this.twoStage = twoStage;
+    }
+
+    /**
+     * Chooses between building the AST while parsing and building it from a complete parse tree.
+     * Both produce the same AST; without the parse tree far fewer objects are allocated and kept alive.
+     * @param buildParseTree true to build the parse tree and walk it, false to build the AST in one pass (the default)
+     */
+    public void setBuildParseTree(boolean buildParseTree) {
+        this.buildParseTree = buildParseTree;
+    }
+
+    /**
+     * Turns ANTLR's decision profiler on or off. A profiled parse always uses full LL prediction in a
+     * single stage, so fallbacks from SLL to LL and ambiguities show up; it is slower than a normal parse.
+     * @param profile true to profile the following parses
+     */
+    public void setProfile(boolean profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Returns the decision statistics of the last profiled parse
+     * @return the profile, or null when no parse was profiled yet
+     */
+    public DecisionProfile getLastProfile() {
+        return lastProfile;
+    }
+
+    /**
+     * Lexes and parses input and builds its AST
+     * @param input the ICSS source
+     * @param errorListener receives lexer and parser errors, may be null
+     * @return the AST of input
+     */
+    public AST parse(CharStream input, ANTLRErrorListener errorListener) {
+        if (profile) {
+            return parseProfiled(input, errorListener);
+        }
+        try {
+            ASTListener listener = twoStage ? parseTwoStage(input, errorListener) : parseLL(input, errorListener);
+            return listener.getAST();
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Parses input without holding more of it in memory than the top-level rule (variable assignment
+     * or stylerule) being parsed. Characters and tokens are read through unbuffered streams and the
+     * AST is always built in one pass, no parse tree is kept.
+     * An unbuffered stream cannot be rewound, so this always uses full LL prediction.
+     * @param input the ICSS source, typically an {@link UnbufferedCharStream}
+     * @param errorListener receives lexer and parser errors, may be null
+     * @return the AST of input
+     */
+    public AST parseStreaming(CharStream input, ANTLRErrorListener errorListener) {
+        return parseStatements(input, errorListener, null).getAST();
+    }
+
+    /**
+     * Parses input like {@link #parseStreaming(CharStream, ANTLRErrorListener)}, but copies every
+     * top-level rule into a {@link CompactAST} as soon as it is parsed and drops its objects, so the
+     * AST of a stylesheet too large to hold as objects is kept in a few arrays instead.
+     * @param input the ICSS source, typically an {@link UnbufferedCharStream}
+     * @param errorListener receives lexer and parser errors, may be null
+     * @return the AST of input
+     */
+    public CompactAST parseStreamingCompact(CharStream input, ANTLRErrorListener errorListener) {
+        CompactAST compact = new CompactAST();
+        parseStatements(input, errorListener, compact);
+        compact.trimToSize();
+        return compact;
+    }
+
+    // Parses input one top-level rule at a time, moving each into compact when it is not null
+    private ASTListener parseStatements(CharStream input, ANTLRErrorListener errorListener, CompactAST compact) {
+        lexer.setInputStream(input);
+        lexer.setTokenFactory(COPYING_TOKEN_FACTORY);
+        UnbufferedTokenStream<Token> stream = new UnbufferedTokenStream<>(lexer);
+        parser.setTokenStream(stream);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        if (errorListener != null) {
+            lexer.addErrorListener(errorListener);
+            parser.addErrorListener(errorListener);
+        }
+        ASTListener listener = new ASTListener();
+        parser.setBuildParseTree(false);
+        parser.addParseListener(listener);
+        try {
+            if (stream.LA(1) == Token.EOF) {
+                // Let the grammar report the empty stylesheet
+                parser.stylesheet();
+                return listener;
+            }
+            listener.enterStylesheet(null);
+            while (stream.LA(1) != Token.EOF) {
+                int start = stream.index();
+                if (stream.LA(1) == ICSSParser.VAR_IDENT) {
+                    parser.variableAssignment();
+                } else {
+                    parser.stylerule();
+                }
+                if (stream.index() == start) {
+                    stream.consume(); // The error is reported, skip the token so parsing moves on
+                }
+                if (compact != null) {
+                    Stylesheet stylesheet = listener.getStylesheet();
+                    for (ASTNode statement : stylesheet.body) {
+                        compact.append(statement);
+                    }
+                    stylesheet.body.clear();
+                }
+            }
+            listener.exitStylesheet(null);
+            return listener;
+        } finally {
+            lexer.setTokenFactory(CommonTokenFactory.DEFAULT);
+            release();
+        }
+    }
+
+    /**
+     * Parses input split into parts at top-level boundaries (see {@link TopLevelScanner}), in parallel.
+     * The stylesheet holds the parts' nodes in source order, and errors are passed to errorListener
+     * on the calling thread, in source order. Errors and node positions use the lines, columns and
+     * offsets of the whole input.
+     * Parts are parsed independently, so after a syntax error that leaves a brace unclosed the
+     * recovery can differ from a sequential parse.
+     * @param input the ICSS source
+     * @param errorListener receives lexer and parser errors, may be null
+     * @param pool the pool that parses the parts
+     * @return the AST of input
+     */
+    public static AST parseParallel(String input, ANTLRErrorListener errorListener, ForkJoinPool pool) {
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, input.length() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+        if (input.length() < 2 * chunkSize) {
+            return forCurrentThread().parse(CharStreams.fromString(input), errorListener);
+        }
+        List<ForkJoinTask<AST>> tasks = new ArrayList<>();
+        List<DeferredErrors> chunkErrors = new ArrayList<>();
+        int start = 0;
+        int line = 1;
+        int lineStart = 0;
+        while (start < input.length()) {
+            int end = start;
+            while (end < input.length() && end - start < chunkSize) {
+                end = TopLevelScanner.nextBoundary(input, end);
+            }
+            if (TopLevelScanner.isBlank(input, end, input.length())) {
+                end = input.length();
+            }
+            String chunk = input.substring(start, end);
+            int offset = start;
+            int lineOffset = line - 1;
+            int columnOffset = start - lineStart;
+            DeferredErrors errors = new DeferredErrors(lineOffset, columnOffset);
+            chunkErrors.add(errors);
+            tasks.add(pool.submit(() -> {
+                AST part = forCurrentThread().parse(CharStreams.fromString(chunk), errors);
+                SourcePosition.shift(part.root, offset, lineOffset, 1, columnOffset);
+                return part;
+            }));
+            for (int i = start; i < end; i++) {
+                if (input.charAt(i) == '\n') {
+                    line++;
+                    lineStart = i + 1;
+                }
+            }
+            start = end;
+        }
+
+        AST ast = new AST();
+        for (int i = 0; i < tasks.size(); i++) {
+            ast.root.body.addAll(tasks.get(i).join().root.body);
+            if (errorListener != null) {
+                chunkErrors.get(i).replay(errorListener);
+            }
+        }
+        if (!ast.root.body.isEmpty()) {
+            ast.root.setPosition(ast.root.body.get(0).getStart(), ast.root.body.get(ast.root.body.size() - 1).getStop());
+        }
+        return ast;
+    }
+
+    private AST parseProfiled(CharStream input, ANTLRErrorListener errorListener) {
+        // A new profiling simulator per parse, so the statistics cover this input only
+        parser.setProfile(false);
+        parser.setProfile(true);
+        try {
+            AST ast = parseLL(input, errorListener).getAST();
+            lastProfile = new DecisionProfile(parser);
+            return ast;
+        } finally {
+            parser.setProfile(false);
+            release();
+        }
+    }
+
+    private ASTListener parseTwoStage(CharStream input, ANTLRErrorListener errorListener) {
+        reset(input);
+        // Hold lexer errors back: if SLL bails, the LL stage lexes again and reports them in its own order
+        deferredLexerErrors.clear();
+        lexer.addErrorListener(deferredLexerErrors);
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            ASTListener listener = parseStylesheet();
+            if (errorListener != null) {
+                deferredLexerErrors.replay(errorListener);
+            }
+            return listener;
+        } catch (ParseCancellationException e) {
+            input.seek(0);
+            lexer.removeErrorListeners();
+            return parseLL(input, errorListener);
+        } finally {
+            deferredLexerErrors.clear();
+        }
+    }
+
+    private ASTListener parseLL(CharStream input, ANTLRErrorListener errorListener) {
+        reset(input);
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        if (errorListener != null) {
+            lexer.addErrorListener(errorListener);
+            parser.addErrorListener(errorListener);
+        }
+        return parseStylesheet();
+    }
+
+    private ASTListener parseStylesheet() {
+        ASTListener listener = new ASTListener();
+        parser.setBuildParseTree(buildParseTree);
+        if (buildParseTree) {
+            ParseTreeWalker.DEFAULT.walk(listener, parser.stylesheet());
+            return listener;
+        }
+        // A bailed SLL attempt leaves its listener half-way, the LL stage starts with a fresh one
+        parser.addParseListener(listener);
+        try {
+            parser.stylesheet();
+        } finally {
+            parser.removeParseListener(listener);
+        }
+        return listener;
+    }
+
+    private void reset(CharStream input) {
+        lexer.setInputStream(input);
+        tokens.setTokenSource(lexer);
+        parser.setTokenStream(tokens);
+    }
+
+    // Drop every reference to the last input so an idle context does not keep it alive
+    private void release() {
+        lexer.removeErrorListeners();
+        parser.removeErrorListeners();
+        parser.removeParseListeners();
+        reset(null);
+    }
+
+    private static String readResource(String name) {
+        try (InputStream in = ParseContext.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing warm-up resource " + name);
+            }
+            return CharStreams.fromStream(in).toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Remembers syntax errors so they can be passed on later, or dropped.
+     * Errors in a part of a larger input are moved to the part's position in that input.
+     */
+    private static class DeferredErrors extends BaseErrorListener {
+        private final List<Object[]> errors = new ArrayList<>();
+        private final int lineOffset;
+        private final int firstLineColumnOffset;
+
+        DeferredErrors() {
+            this(0, 0);
+        }
+
+        DeferredErrors(int lineOffset, int firstLineColumnOffset) {
+            this.lineOffset = lineOffset;
+            this.firstLineColumnOffset = firstLineColumnOffset;
+        }
+
+        @Override
+        public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                                int charPositionInLine, String msg, RecognitionException e) {
+            int column = line == 1 ? charPositionInLine + firstLineColumnOffset : charPositionInLine;
+            errors.add(new Object[]{recognizer, offendingSymbol, line + lineOffset, column, msg, e});
+        }
+
+        void replay(ANTLRErrorListener target) {
+            for (Object[] error : errors) {
+                target.syntaxError((Recognizer<?, ?>) error[0], error[1], (Integer) error[2],
+                        (Integer) error[3], (String) error[4], (RecognitionException) error[5]);
+            }
+        }
+
+        void clear() {
+            errors.clear();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * The parsers the pipeline can use to turn ICSS source into an AST. Both build the same AST
+ * for valid input.
+ */
+public enum ParserEngine {
+    /** The lexer and parser ANTLR generates from ICSS.g4, see {@link ParseContext} */
+    ANTLR,
+    /** The hand-written {@link RecursiveDescentParser} */
+    RECURSIVE_DESCENT
+}
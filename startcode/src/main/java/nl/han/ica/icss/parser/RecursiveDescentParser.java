@@ -0,0 +1,346 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Parses ICSS without ANTLR's runtime: a hand-written lexer ({@link ICSSScanner}) and one method
+ * per grammar rule of ICSS.g4 that builds the AST nodes directly. Every rule can be decided on the
+ * next token, except expression, which is parsed with precedence climbing using the precedence
+ * the alternatives of the left-recursive rule have in the grammar (* before + and -).
+ *
+ * Every node gets the position of its first and last character, see {@link SourcePosition}.
+ *
+ * Errors are reported to an {@link ANTLRErrorListener} in ANTLR's wording. After an error the
+ * parser skips to the end of the declaration or rule it was in; the AST built so far is kept.
+ * Recovery is simpler than ANTLR's, so for invalid input the errors and AST can differ.
+ */
+public class RecursiveDescentParser {
+
+    private static final int NO_OPERATOR = -1;
+
+    private ICSSScanner scanner;
+    private ANTLRErrorListener errorListener;
+
+    /**
+     * Lexes and parses input and builds its AST
+     * @param input the ICSS source
+     * @param errorListener receives lexer and parser errors, may be null
+     * @return the AST of input
+     */
+    public AST parse(CharSequence input, ANTLRErrorListener errorListener) {
+        this.errorListener = errorListener;
+        this.scanner = new ICSSScanner(input, errorListener);
+        try {
+            AST ast = new AST();
+            ast.setRoot(stylesheet());
+            return ast;
+        } finally {
+            this.scanner = null;
+            this.errorListener = null;
+        }
+    }
+
+    // stylesheet: (variableAssignment | stylerule)+
+    private Stylesheet stylesheet() {
+        Stylesheet stylesheet = new Stylesheet();
+        long start = scanner.startPosition();
+        if (at(Token.EOF)) {
+            mismatched(ICSSLexer.VAR_IDENT, ICSSLexer.ID_IDENT, ICSSLexer.CLASS_IDENT, ICSSLexer.LOWER_IDENT);
+        }
+        while (!at(Token.EOF)) {
+            try {
+                if (at(ICSSLexer.VAR_IDENT)) {
+                    variableAssignment(stylesheet);
+                } else if (atSelector()) {
+                    stylerule(stylesheet);
+                } else {
+                    extraneous(ICSSLexer.VAR_IDENT, ICSSLexer.ID_IDENT, ICSSLexer.CLASS_IDENT, ICSSLexer.LOWER_IDENT);
+                }
+            } catch (SyntaxError e) {
+                skipPast(ICSSLexer.CLOSE_BRACE);
+            }
+        }
+        stylesheet.setPosition(start, scanner.previousStop());
+        return stylesheet;
+    }
+
+    // stylerule: selector OPEN_BRACE (declaration | variableAssignment | if_clause)+ CLOSE_BRACE
+    private void stylerule(ASTNode parent) {
+        Stylerule rule = open(new Stylerule(), parent);
+        rule.addChild(selector());
+        expect(ICSSLexer.OPEN_BRACE);
+        body(rule, true);
+        expectClosing(ICSSLexer.CLOSE_BRACE);
+        close(rule);
+    }
+
+    private Selector selector() {
+        Selector selector;
+        switch (scanner.type()) {
+            case ICSSLexer.ID_IDENT:
+                selector = new IdSelector(scanner.text());
+                break;
+            case ICSSLexer.CLASS_IDENT:
+                selector = new ClassSelector(scanner.text());
+                break;
+            case ICSSLexer.LOWER_IDENT:
+                selector = new TagSelector(scanner.text());
+                break;
+            default:
+                throw mismatched(ICSSLexer.ID_IDENT, ICSSLexer.CLASS_IDENT, ICSSLexer.LOWER_IDENT);
+        }
+        return leaf(selector);
+    }
+
+    // (declaration | variableAssignment | if_clause)+, if_clause is not allowed in an else clause
+    private void body(ASTNode parent, boolean ifAllowed) {
+        if (at(ICSSLexer.CLOSE_BRACE)) {
+            mismatchedBodyItem(ifAllowed);
+        }
+        while (!at(ICSSLexer.CLOSE_BRACE) && !at(Token.EOF)) {
+            try {
+                if (at(ICSSLexer.LOWER_IDENT)) {
+                    declaration(parent);
+                } else if (at(ICSSLexer.VAR_IDENT)) {
+                    variableAssignment(parent);
+                } else if (ifAllowed && at(ICSSLexer.IF)) {
+                    ifClause(parent);
+                } else {
+                    throw mismatchedBodyItem(ifAllowed);
+                }
+            } catch (SyntaxError e) {
+                skipToEndOfDeclaration();
+            }
+        }
+    }
+
+    // declaration: property COLON expression SEMICOLON
+    private void declaration(ASTNode parent) {
+        Declaration declaration = open(new Declaration(), parent);
+        declaration.addChild(leaf(new PropertyName(scanner.text())));
+        expect(ICSSLexer.COLON);
+        declaration.addChild(expression(0));
+        expectClosing(ICSSLexer.SEMICOLON);
+        close(declaration);
+    }
+
+    // variableAssignment: variable ASSIGNMENT_OPERATOR expression SEMICOLON
+    private void variableAssignment(ASTNode parent) {
+        VariableAssignment variableAssignment = open(new VariableAssignment(), parent);
+        variableAssignment.addChild(leaf(new VariableReference(scanner.text())));
+        expect(ICSSLexer.ASSIGNMENT_OPERATOR);
+        variableAssignment.addChild(expression(0));
+        expectClosing(ICSSLexer.SEMICOLON);
+        close(variableAssignment);
+    }
+
+    // if_clause: IF BOX_BRACKET_OPEN (booleanLiteral | variable) BOX_BRACKET_CLOSE OPEN_BRACE (...)+ CLOSE_BRACE (else_clause)?
+    private void ifClause(ASTNode parent) {
+        IfClause ifClause = open(new IfClause(), parent);
+        scanner.next();
+        expect(ICSSLexer.BOX_BRACKET_OPEN);
+        if (at(ICSSLexer.TRUE) || at(ICSSLexer.FALSE)) {
+            ifClause.addChild(leaf(new BoolLiteral(at(ICSSLexer.TRUE))));
+        } else if (at(ICSSLexer.VAR_IDENT)) {
+            ifClause.addChild(leaf(new VariableReference(scanner.text())));
+        } else {
+            throw mismatched(ICSSLexer.TRUE, ICSSLexer.FALSE, ICSSLexer.VAR_IDENT);
+        }
+        expectClosing(ICSSLexer.BOX_BRACKET_CLOSE);
+        expect(ICSSLexer.OPEN_BRACE);
+        body(ifClause, true);
+        expectClosing(ICSSLexer.CLOSE_BRACE);
+        if (at(ICSSLexer.ELSE)) {
+            ElseClause elseClause = open(new ElseClause(), ifClause);
+            scanner.next();
+            expect(ICSSLexer.OPEN_BRACE);
+            body(elseClause, false);
+            expectClosing(ICSSLexer.CLOSE_BRACE);
+            close(elseClause);
+        }
+        close(ifClause);
+    }
+
+    // Precedence climbing over the left-recursive expression rule, all operators are left-associative
+    private Expression expression(int minimumPrecedence) {
+        Expression lhs = primary();
+        int precedence = precedence(scanner.type());
+        while (precedence != NO_OPERATOR && precedence >= minimumPrecedence) {
+            Operation operation = operation(scanner.type());
+            scanner.next();
+            Expression rhs = expression(precedence + 1);
+            operation.addChild(lhs).addChild(rhs);
+            operation.setPosition(lhs.getStart(), rhs.getStop());
+            lhs = operation;
+            precedence = precedence(scanner.type());
+        }
+        return lhs;
+    }
+
+    private static int precedence(int type) {
+        switch (type) {
+            case ICSSLexer.MUL: return 1;
+            case ICSSLexer.PLUS:
+            case ICSSLexer.MIN: return 0;
+            default: return NO_OPERATOR;
+        }
+    }
+
+    private static Operation operation(int type) {
+        switch (type) {
+            case ICSSLexer.MUL: return new MultiplyOperation();
+            case ICSSLexer.PLUS: return new AddOperation();
+            default: return new SubtractOperation();
+        }
+    }
+
+    private Expression primary() {
+        Expression expression;
+        switch (scanner.type()) {
+            case ICSSLexer.COLOR:
+                expression = new ColorLiteral(scanner.colorValue());
+                break;
+            case ICSSLexer.PIXELSIZE:
+                expression = new PixelLiteral(scanner.intValue(2));
+                break;
+            case ICSSLexer.PERCENTAGE:
+                expression = new PercentageLiteral(scanner.intValue(1));
+                break;
+            case ICSSLexer.SCALAR:
+                expression = new ScalarLiteral(scanner.intValue(0));
+                break;
+            case ICSSLexer.TRUE:
+            case ICSSLexer.FALSE:
+                expression = new BoolLiteral(at(ICSSLexer.TRUE));
+                break;
+            case ICSSLexer.VAR_IDENT:
+                expression = new VariableReference(scanner.text());
+                break;
+            default:
+                throw mismatched(ICSSLexer.TRUE, ICSSLexer.FALSE, ICSSLexer.PIXELSIZE, ICSSLexer.PERCENTAGE,
+                        ICSSLexer.SCALAR, ICSSLexer.COLOR, ICSSLexer.VAR_IDENT);
+        }
+        return leaf(expression);
+    }
+
+    // Adds a container to its parent before its content is parsed, so it stays in the AST after an error
+    private <T extends ASTNode> T open(T node, ASTNode parent) {
+        long start = scanner.startPosition();
+        node.setPosition(start, start);
+        parent.addChild(node);
+        return node;
+    }
+
+    private void close(ASTNode node) {
+        node.setPosition(node.getStart(), scanner.previousStop());
+    }
+
+    // Gives a node made from the current token that token's position, and moves past it
+    private <T extends ASTNode> T leaf(T node) {
+        node.setPosition(scanner.startPosition(), scanner.stopPosition());
+        scanner.next();
+        return node;
+    }
+
+    private boolean at(int type) {
+        return scanner.type() == type;
+    }
+
+    private boolean atSelector() {
+        return at(ICSSLexer.ID_IDENT) || at(ICSSLexer.CLASS_IDENT) || at(ICSSLexer.LOWER_IDENT);
+    }
+
+    private void expect(int type) {
+        if (!at(type)) {
+            throw mismatched(type);
+        }
+        scanner.next();
+    }
+
+    // A missing terminator is reported and assumed present, the rule that follows can still be parsed
+    private void expectClosing(int type) {
+        if (at(type)) {
+            scanner.next();
+        } else {
+            report("missing " + ICSSParser.VOCABULARY.getDisplayName(type) + " at " + scanner.display());
+        }
+    }
+
+    private void skipToEndOfDeclaration() {
+        while (!at(ICSSLexer.CLOSE_BRACE) && !at(Token.EOF)) {
+            boolean semicolon = at(ICSSLexer.SEMICOLON);
+            scanner.next();
+            if (semicolon) {
+                return;
+            }
+        }
+    }
+
+    private void skipPast(int type) {
+        while (!at(Token.EOF)) {
+            boolean found = at(type);
+            scanner.next();
+            if (found) {
+                return;
+            }
+        }
+    }
+
+    private SyntaxError mismatchedBodyItem(boolean ifAllowed) {
+        return ifAllowed
+                ? mismatched(ICSSLexer.IF, ICSSLexer.VAR_IDENT, ICSSLexer.LOWER_IDENT)
+                : mismatched(ICSSLexer.VAR_IDENT, ICSSLexer.LOWER_IDENT);
+    }
+
+    private SyntaxError mismatched(int... expected) {
+        report("mismatched input " + scanner.display() + " expecting " + describe(expected));
+        return SyntaxError.INSTANCE;
+    }
+
+    private void extraneous(int... expected) {
+        report("extraneous input " + scanner.display() + " expecting " + describe(expected));
+        scanner.next();
+    }
+
+    private void report(String message) {
+        if (errorListener != null) {
+            errorListener.syntaxError(null, null, scanner.line(), scanner.column(), message, null);
+        }
+    }
+
+    private static String describe(int[] types) {
+        if (types.length == 1) {
+            return ICSSParser.VOCABULARY.getDisplayName(types[0]);
+        }
+        StringBuilder description = new StringBuilder("{");
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(ICSSParser.VOCABULARY.getDisplayName(types[i]));
+        }
+        return description.append('}').toString();
+    }
+
+    /**
+     * Unwinds to the nearest rule that recovers; the error itself has already been reported
+     */
+    private static class SyntaxError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final SyntaxError INSTANCE = new SyntaxError();
+
+        private SyntaxError() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package nl.han.ica.icss.parser;
+
+/**
+ * Finds the boundaries between top-level constructs (variable assignments and stylerules)
+ * without lexing. ICSS has no strings or comments, so a construct ends at the first ';' outside
+ * braces or at the '}' that closes its outermost brace. Whitespace after a boundary belongs to
+ * the construct that follows, so consecutive spans cover the whole text.
+ */
+final class TopLevelScanner {
+
+    private TopLevelScanner() {
+    }
+
+    /**
+     * Returns where the top-level construct starting at from ends
+     * @param text the ICSS source
+     * @param from an offset at brace depth zero
+     * @return the offset just after the construct's closing ';' or '}', or text.length() when it is not closed
+     */
+    static int nextBoundary(CharSequence text, int from) {
+        int depth = 0;
+        int length = text.length();
+        for (int i = from; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                // An unmatched '}' ends a construct as well, like any other stray token
+                if (depth <= 1) {
+                    return i + 1;
+                }
+                depth--;
+            } else if (c == ';' && depth == 0) {
+                return i + 1;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Checks whether a span holds nothing but whitespace, and so no construct
+     * @param text the ICSS source
+     * @param start first offset of the span
+     * @param end offset after the span
+     * @return true when the span is blank
+     */
+    static boolean isBlank(CharSequence text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
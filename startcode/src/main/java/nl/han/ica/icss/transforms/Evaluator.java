@@ -1,9 +1,9 @@
 package nl.han.ica.icss.transforms;
 
-import nl.han.ica.datastructures.HANLinkedList;
-import nl.han.ica.datastructures.IHANLinkedList;
+import nl.han.ica.datastructures.HANScope;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.LiteralFactory;
 import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
@@ -12,72 +12,105 @@ import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 public class Evaluator implements Transform {
 
-    private IHANLinkedList<HashMap<String, Literal>> variableValues;
+    private HANScope<String, Literal> variableValues;
+
+    // Applies statements, the context is the body the statement ends up in
+    private final ASTVisitor<Void, ArrayList<ASTNode>> statements = new StatementEvaluator();
+    // Calculates the literal value of an expression
+    private final ASTVisitor<Expression, Void> expressions = new ExpressionEvaluator();
+    // Evaluates statements into new nodes, the context is the body the result ends up in
+    private final ASTVisitor<Void, ArrayList<ASTNode>> copies = new StatementCopier();
 
     public Evaluator() {
-        variableValues = new HANLinkedList<>();
-        variableValues.addFirst(new HashMap<>()); // Add a global scope
+        variableValues = new HANScope<>(); // Global scope
     }
 
     @Override
     public void apply(AST ast) {
-        applyStyleSheet(ast.root);
+        ast.root.accept(statements, null);
     }
 
-    private void applyStyleSheet(Stylesheet node) {
-        List<ASTNode> toRemove = new ArrayList<>(); // List of nodes to remove, we don't want to see variable assignments in the final stylesheet
+    /*
+     Errors for undefined variables are still set on the variable references in ast.
+     */
+    @Override
+    public AST transform(AST ast) {
+        ArrayList<ASTNode> result = new ArrayList<>(1);
+        ast.root.accept(copies, result);
+        return new AST((Stylesheet) result.get(0));
+    }
 
-        this.variableValues.addFirst(new HashMap<>()); // Add a new scope for the stylesheet
+    /**
+     * Evaluates one top-level statement of a checked stylesheet in place, as {@link #apply(AST)} would:
+     * with the global variables assigned by the statements evaluated before it. Call it for every
+     * statement in order, so a stylesheet can be transformed without all of it in memory.
+     * @param statement a top-level variable assignment or style rule
+     * @return the evaluated statement, or null for a variable assignment, which is left out of the stylesheet
+     */
+    public ASTNode applyStatement(ASTNode statement) {
+        statement.accept(statements, null);
+        return statement instanceof VariableAssignment ? null : statement;
+    }
 
-        for (ASTNode child : node.getChildren()) {
-            if (child instanceof Stylerule) {
-                applyStyleRule((Stylerule) child);
-            } else if (child instanceof VariableAssignment) {
-                this.applyVariableAssignment((VariableAssignment) child);
-                toRemove.add(child); // Add to remove list
-            }
-        }
+    private class StatementEvaluator implements ASTVisitor<Void, ArrayList<ASTNode>> {
 
-        this.variableValues.removeFirst(); // Remove the scope for the stylesheet
-        toRemove.forEach(node::removeChild); // Remove all variable assignments from the stylesheet
-    }
+        @Override
+        public Void visitStylesheet(Stylesheet node, ArrayList<ASTNode> parentBody) {
+            ArrayList<ASTNode> toKeep = new ArrayList<>(); // Everything but the variable assignments, we don't want to see those in the final stylesheet
 
-    private void applyVariableAssignment(VariableAssignment node) {
-        Literal value = (Literal) applyExpression(node.expression); // Evaluate the expression
-        variableValues.getFirst().put(node.name.name, value); // Add the variable to the current scope
-    }
+            variableValues = variableValues.enter(); // Add a new scope for the stylesheet
 
-    private void applyStyleRule(Stylerule node) {
-        ArrayList<ASTNode> toAdd = new ArrayList<>(); // List of nodes to add, we don't want to see if clauses in the final stylesheet
+            for (ASTNode child : node.body) {
+                child.accept(this, null);
+                if (!(child instanceof VariableAssignment)) {
+                    toKeep.add(child);
+                }
+            }
 
-        variableValues.addFirst(new HashMap<>()); // Add a new scope for the style rule
+            variableValues = variableValues.exit(); // Remove the scope for the stylesheet
+            node.body = toKeep; // Replace the body without the variable assignments
+            node.invalidateHash();
+            return null;
+        }
 
-        for (ASTNode child: node.body){
-            applyRuleBody(child, toAdd); // Apply the rule body
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node, ArrayList<ASTNode> parentBody) {
+            Literal value = (Literal) applyExpression(node.expression); // Evaluate the expression
+            variableValues = variableValues.define(node.name.name, value); // Add the variable to the current scope
+            return null;
         }
 
-        this.variableValues.removeFirst(); // Remove the scope for the style rule
-        node.body = toAdd; // Replace the body with the new body
-    }
+        @Override
+        public Void visitStylerule(Stylerule node, ArrayList<ASTNode> parentBody) {
+            ArrayList<ASTNode> toAdd = new ArrayList<>(); // List of nodes to add, we don't want to see if clauses in the final stylesheet
 
-    private void applyRuleBody(ASTNode node, ArrayList<ASTNode> parentBody) {
-        if (node instanceof Declaration) {
-            applyDeclaration((Declaration) node);
-            parentBody.add(node); // Add the declaration to the parent body
+            variableValues = variableValues.enter(); // Fork a new scope for the style rule, the enclosing scopes are shared
+
+            for (ASTNode child: node.body){
+                child.accept(this, toAdd); // Apply the rule body
+            }
+
+            variableValues = variableValues.exit(); // Remove the scope for the style rule
+            node.body = toAdd; // Replace the body with the new body
+            node.invalidateHash();
+            return null;
         }
 
-        if (node instanceof VariableAssignment) {
-            applyVariableAssignment((VariableAssignment) node);
+        @Override
+        public Void visitDeclaration(Declaration node, ArrayList<ASTNode> parentBody) {
+            node.expression = applyExpression(node.expression);
+            node.invalidateHash();
+            parentBody.add(node); // Add the declaration to the parent body
+            return null;
         }
 
         // TR02: Evalueer if/else expressies. Schrijf een transformatie in Evaluator die alle IfClauses uit de AST verwijdert. Wanneer de conditie van de IfClause TRUE is wordt deze vervangen door de body van het if-statement. Als de conditie FALSE is dan vervang je de IfClause door de body van de ElseClause. Als er geen ElseClause is bij een negatieve conditie dan verwijder je de IfClause volledig uit de AST.
-        if (node instanceof IfClause) {
-            IfClause ifClause = (IfClause) node;
+        @Override
+        public Void visitIfClause(IfClause ifClause, ArrayList<ASTNode> parentBody) {
             ifClause.conditionalExpression = applyExpression(ifClause.conditionalExpression);
 
             BoolLiteral condition = (BoolLiteral) ifClause.conditionalExpression;
@@ -94,115 +127,196 @@ public class Evaluator implements Transform {
                     ifClause.elseClause.body = new ArrayList<>(); // Clear else clause if condition is false
                 }
             }
+            if (ifClause.elseClause != null){
+                ifClause.elseClause.invalidateHash();
+            }
+            ifClause.invalidateHash();
 
-            this.applyIfClause(node, parentBody);
+            // The body that is left ends up in the parent body, the condition and else clause are skipped
+            for (int i = 0, count = ifClause.childCount(); i < count; i++) {
+                ifClause.childAt(i).accept(this, parentBody);
+            }
+            return null;
         }
     }
 
-    private void applyIfClause(ASTNode node, ArrayList<ASTNode> parentBody) {
-        for (ASTNode child : node.getChildren()) {
-            applyRuleBody(child, parentBody);
+    // Evaluates like StatementEvaluator, but builds new nodes instead of changing the ones it visits
+    private class StatementCopier extends StatementEvaluator {
+
+        @Override
+        public Void visitStylesheet(Stylesheet node, ArrayList<ASTNode> parentBody) {
+            ArrayList<ASTNode> body = new ArrayList<>(node.body.size());
+
+            variableValues = variableValues.enter(); // Add a new scope for the stylesheet
+
+            for (ASTNode child : node.body) {
+                child.accept(this, body); // Variable assignments add nothing
+            }
+
+            variableValues = variableValues.exit(); // Remove the scope for the stylesheet
+            Stylesheet copy = new Stylesheet(body);
+            copy.setPosition(node.getStart(), node.getStop());
+            parentBody.add(copy);
+            return null;
         }
-    }
 
-    private void applyDeclaration(Declaration node) {
-        node.expression = applyExpression(node.expression);
+        @Override
+        public Void visitStylerule(Stylerule node, ArrayList<ASTNode> parentBody) {
+            ArrayList<ASTNode> body = new ArrayList<>(node.body.size());
+
+            variableValues = variableValues.enter(); // Fork a new scope for the style rule, the enclosing scopes are shared
+
+            for (ASTNode child : node.body) {
+                child.accept(this, body);
+            }
+
+            variableValues = variableValues.exit(); // Remove the scope for the style rule
+            if (sameNodes(body, node.body)) {
+                parentBody.add(node); // Nothing to evaluate, share the rule
+                return null;
+            }
+            Stylerule copy = new Stylerule();
+            copy.selectors = new ArrayList<>(node.selectors);
+            copy.body = body;
+            copy.setPosition(node.getStart(), node.getStop());
+            parentBody.add(copy);
+            return null;
+        }
+
+        @Override
+        public Void visitDeclaration(Declaration node, ArrayList<ASTNode> parentBody) {
+            Expression value = applyExpression(node.expression);
+            if (value == node.expression) {
+                parentBody.add(node); // Already a literal, share the declaration
+                return null;
+            }
+            Declaration copy = new Declaration();
+            copy.property = node.property;
+            copy.expression = value;
+            copy.setPosition(node.getStart(), node.getStop());
+            parentBody.add(copy);
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(IfClause ifClause, ArrayList<ASTNode> parentBody) {
+            BoolLiteral condition = (BoolLiteral) applyExpression(ifClause.conditionalExpression);
+
+            List<ASTNode> chosen = ifClause.body;
+            if (!condition.value) {
+                chosen = ifClause.elseClause == null ? List.of() : ifClause.elseClause.body;
+            }
+            for (ASTNode child : chosen) {
+                child.accept(this, parentBody);
+            }
+            return null;
+        }
+
+        private boolean sameNodes(List<ASTNode> evaluated, List<ASTNode> original) {
+            if (evaluated.size() != original.size()) {
+                return false;
+            }
+            for (int i = 0; i < evaluated.size(); i++) {
+                if (evaluated.get(i) != original.get(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
-    private Expression applyExpression(Expression expression) {
-        if (expression instanceof VariableReference){
-            VariableReference ref = (VariableReference) expression;
+    // TR01: Evalueer expressies. Schrijf een transformatie in Evaluator die alle Expression knopen in de AST door een Literal knoop met de berekende waarde vervangt.
+    private class ExpressionEvaluator implements ASTVisitor<Expression, Void> {
+
+        @Override
+        public Expression visitExpression(Expression expression, Void context) {
+            return expression; // Literals are their own value
+        }
+
+        @Override
+        public Expression visitVariableReference(VariableReference ref, Void context) {
             Literal value = lookupVariableValue(ref.name);
 
             if (value != null){
                 return value;
-            } else {
-                expression.setError("Variable " + ref.name + " not defined.");
             }
-        } else if (expression instanceof Operation){
-            return applyOperation(expression);
+            ref.setError("Variable " + ref.name + " not defined.");
+            return ref;
         }
-        return expression;
-    }
 
-    // TR01: Evalueer expressies. Schrijf een transformatie in Evaluator die alle Expression knopen in de AST door een Literal knoop met de berekende waarde vervangt.
-    private Expression applyOperation(Expression operation) {
-        if (operation instanceof MultiplyOperation){
-            return applyMultiplyOperation((MultiplyOperation) operation);
-        } else if (operation instanceof AddOperation){
-            return applyAddOperation((AddOperation) operation);
-        } else if (operation instanceof SubtractOperation){
-            return applySubtractOperation((SubtractOperation) operation);
+        @Override
+        public Expression visitOperation(Operation operation, Void context) {
+            operation.setError("Unknown operation");
+
+            return null;
         }
-        operation.setError("Unknown operation");
 
-        return null;
-    }
+        @Override
+        public Expression visitMultiplyOperation(MultiplyOperation operation, Void context) {
+            Literal lhsValue = (Literal) applyExpression(operation.lhs);
+            Literal rhsValue = (Literal) applyExpression(operation.rhs);
+
+            if (lhsValue instanceof ScalarLiteral && rhsValue instanceof PixelLiteral) {
+                int result = ((ScalarLiteral) lhsValue).value * ((PixelLiteral) rhsValue).value;
+                return LiteralFactory.pixel(result);
+            } else if (lhsValue instanceof PixelLiteral && rhsValue instanceof ScalarLiteral) {
+                int result = ((PixelLiteral) lhsValue).value * ((ScalarLiteral) rhsValue).value;
+                return LiteralFactory.pixel(result);
+            } else if (lhsValue instanceof ScalarLiteral && rhsValue instanceof PercentageLiteral) {
+                int result = ((ScalarLiteral) lhsValue).value * ((PercentageLiteral) rhsValue).value;
+                return LiteralFactory.percentage(result);
+            } else if (lhsValue instanceof PercentageLiteral && rhsValue instanceof ScalarLiteral) {
+                int result = ((PercentageLiteral) lhsValue).value * ((ScalarLiteral) rhsValue).value;
+                return LiteralFactory.percentage(result);
+            }
 
-    private Literal applyMultiplyOperation(MultiplyOperation operation) {
-        Literal lhsValue = (Literal) applyExpression(operation.lhs);
-        Literal rhsValue = (Literal) applyExpression(operation.rhs);
-
-        if (lhsValue instanceof ScalarLiteral && rhsValue instanceof PixelLiteral) {
-            int result = ((ScalarLiteral) lhsValue).value * ((PixelLiteral) rhsValue).value;
-            return new PixelLiteral(result + "px");
-        } else if (lhsValue instanceof PixelLiteral && rhsValue instanceof ScalarLiteral) {
-            int result = ((PixelLiteral) lhsValue).value * ((ScalarLiteral) rhsValue).value;
-            return new PixelLiteral(result + "px");
-        } else if (lhsValue instanceof ScalarLiteral && rhsValue instanceof PercentageLiteral) {
-            int result = ((ScalarLiteral) lhsValue).value * ((PercentageLiteral) rhsValue).value;
-            return new PercentageLiteral(result + "%");
-        } else if (lhsValue instanceof PercentageLiteral && rhsValue instanceof ScalarLiteral) {
-            int result = ((PercentageLiteral) lhsValue).value * ((ScalarLiteral) rhsValue).value;
-            return new PercentageLiteral(result + "%");
-        }
-
-        return null;
-    }
+            return null;
+        }
 
-    private Literal applyAddOperation(AddOperation operation) {
-        Literal left = (Literal) applyExpression(operation.lhs);
-        Literal right = (Literal) applyExpression(operation.rhs);
+        @Override
+        public Expression visitAddOperation(AddOperation operation, Void context) {
+            Literal left = (Literal) applyExpression(operation.lhs);
+            Literal right = (Literal) applyExpression(operation.rhs);
+
+            if (left instanceof PixelLiteral && right instanceof PixelLiteral){
+                int result = ((PixelLiteral) left).value + ((PixelLiteral) right).value;
+                return LiteralFactory.pixel(result);
+            } else if (left instanceof ScalarLiteral && right instanceof ScalarLiteral){
+                int result = ((ScalarLiteral) left).value + ((ScalarLiteral) right).value;
+                return LiteralFactory.scalar(result);
+            } else if (left instanceof PercentageLiteral && right instanceof PercentageLiteral){
+                int result = ((PercentageLiteral) left).value + ((PercentageLiteral) right).value;
+                return LiteralFactory.percentage(result);
+            }
 
-        if (left instanceof PixelLiteral && right instanceof PixelLiteral){
-            int result = ((PixelLiteral) left).value + ((PixelLiteral) right).value;
-            return new PixelLiteral(result + "px");
-        } else if (left instanceof ScalarLiteral && right instanceof ScalarLiteral){
-            int result = ((ScalarLiteral) left).value + ((ScalarLiteral) right).value;
-            return new ScalarLiteral(result);
-        } else if (left instanceof PercentageLiteral && right instanceof PercentageLiteral){
-            int result = ((PercentageLiteral) left).value + ((PercentageLiteral) right).value;
-            return new PercentageLiteral(result + "%");
+            return null;
         }
 
-        return null;
-    }
-
-    private Literal applySubtractOperation(SubtractOperation operation) {
-        Literal lhsValue = (Literal) applyExpression(operation.lhs);
-        Literal rhsValue = (Literal) applyExpression(operation.rhs);
+        @Override
+        public Expression visitSubtractOperation(SubtractOperation operation, Void context) {
+            Literal lhsValue = (Literal) applyExpression(operation.lhs);
+            Literal rhsValue = (Literal) applyExpression(operation.rhs);
+
+            if (lhsValue instanceof PixelLiteral && rhsValue instanceof PixelLiteral) {
+                int result = ((PixelLiteral) lhsValue).value - ((PixelLiteral) rhsValue).value;
+                return LiteralFactory.pixel(result);
+            } else if (lhsValue instanceof ScalarLiteral && rhsValue instanceof ScalarLiteral) {
+                int result = ((ScalarLiteral) lhsValue).value - ((ScalarLiteral) rhsValue).value;
+                return LiteralFactory.scalar(result);
+            } else if (lhsValue instanceof PercentageLiteral && rhsValue instanceof PercentageLiteral) {
+                int result = ((PercentageLiteral) lhsValue).value - ((PercentageLiteral) rhsValue).value;
+                return LiteralFactory.percentage(result);
+            }
 
-        if (lhsValue instanceof PixelLiteral && rhsValue instanceof PixelLiteral) {
-            int result = ((PixelLiteral) lhsValue).value - ((PixelLiteral) rhsValue).value;
-            return new PixelLiteral(result + "px");
-        } else if (lhsValue instanceof ScalarLiteral && rhsValue instanceof ScalarLiteral) {
-            int result = ((ScalarLiteral) lhsValue).value - ((ScalarLiteral) rhsValue).value;
-            return new ScalarLiteral(result);
-        } else if (lhsValue instanceof PercentageLiteral && rhsValue instanceof PercentageLiteral) {
-            int result = ((PercentageLiteral) lhsValue).value - ((PercentageLiteral) rhsValue).value;
-            return new PercentageLiteral(result + "%");
+            return null;
         }
+    }
 
-        return null;
+    private Expression applyExpression(Expression expression) {
+        return expression == null ? null : expression.accept(expressions, null);
     }
 
     private Literal lookupVariableValue(String variableName) {
-        for (int i = 0; i < variableValues.getSize(); i++) {
-            HashMap<String, Literal> currentScope = variableValues.get(i);
-            if (currentScope.containsKey(variableName)) {
-                return currentScope.get(variableName);
-            }
-        }
-        return null;
+        return variableValues.lookup(variableName);
     }
 }
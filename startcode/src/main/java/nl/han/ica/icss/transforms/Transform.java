@@ -4,4 +4,13 @@ import nl.han.ica.icss.ast.AST;
 
 public interface Transform {
     void apply(AST ast);
+
+    /**
+     * Transforms like {@link #apply(AST)} without changing ast, so one checked tree can be
+     * transformed many times, also at the same time on several threads. A change to a shared
+     * subtree shows in both trees, and invalidating its hash forgets the cached hashes of both.
+     * @param ast the tree to transform, left as it is
+     * @return a new tree that shares every subtree that did not change with ast
+     */
+    AST transform(AST ast);
 }
@@ -0,0 +1,137 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress tests in the spirit of jcstress: several producers and consumers hammer one
+ * structure at the same time and afterwards every value must have been taken exactly once.
+ */
+class ConcurrentStressTest {
+
+	private static final int THREADS = 4;
+	private static final int VALUES_PER_PRODUCER = 50_000;
+
+	@Test
+	void testQueueHandsOutEveryValueExactlyOnce() throws Exception {
+		ConcurrentHANQueue<Integer> queue = new ConcurrentHANQueue<>();
+		stress(queue::enqueue, queue::dequeue);
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getSize());
+	}
+
+	@Test
+	void testStackHandsOutEveryValueExactlyOnce() throws Exception {
+		ConcurrentHANStack<Integer> stack = new ConcurrentHANStack<>();
+		stress(stack::push, stack::pop);
+		assertTrue(stack.isEmpty());
+	}
+
+	@Test
+	void testRejectsNullBecauseNullMeansEmpty() {
+		ConcurrentHANStack<Integer> stack = new ConcurrentHANStack<>();
+		assertThrows(IllegalArgumentException.class, () -> stack.push(null));
+		assertTrue(stack.isEmpty());
+		ConcurrentHANQueue<Integer> queue = new ConcurrentHANQueue<>();
+		assertThrows(IllegalArgumentException.class, () -> queue.enqueue(null));
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	void testQueueKeepsFifoOrderPerProducer() throws Exception {
+		ConcurrentHANQueue<Integer> queue = new ConcurrentHANQueue<>();
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			for (int p = 0; p < THREADS; p++) {
+				int producer = p;
+				pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < VALUES_PER_PRODUCER; i++) {
+						queue.enqueue(producer * VALUES_PER_PRODUCER + i);
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+		} finally {
+			pool.shutdownNow();
+		}
+
+		int[] lastSeen = new int[THREADS];
+		Arrays.fill(lastSeen, -1);
+		Integer value;
+		while ((value = queue.dequeue()) != null) {
+			int producer = value / VALUES_PER_PRODUCER;
+			int sequence = value % VALUES_PER_PRODUCER;
+			assertTrue(sequence > lastSeen[producer], "values of one producer must come out in order");
+			lastSeen[producer] = sequence;
+		}
+		for (int last : lastSeen) {
+			assertEquals(VALUES_PER_PRODUCER - 1, last);
+		}
+	}
+
+	private void stress(Consumer<Integer> add, Supplier<Integer> take) throws Exception {
+		int total = THREADS * VALUES_PER_PRODUCER;
+		AtomicIntegerArray taken = new AtomicIntegerArray(total);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS * 2);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			Function<Integer, Future<?>> producer = p -> pool.submit(() -> {
+				start.await();
+				for (int i = 0; i < VALUES_PER_PRODUCER; i++) {
+					add.accept(p * VALUES_PER_PRODUCER + i);
+				}
+				return null;
+			});
+			Future<?>[] producers = new Future<?>[THREADS];
+			for (int p = 0; p < THREADS; p++) {
+				producers[p] = producer.apply(p);
+			}
+			Future<?>[] consumers = new Future<?>[THREADS];
+			AtomicInteger remaining = new AtomicInteger(total);
+			for (int c = 0; c < THREADS; c++) {
+				consumers[c] = pool.submit(() -> {
+					start.await();
+					while (remaining.get() > 0) {
+						Integer value = take.get();
+						if (value != null) {
+							assertEquals(0, taken.getAndIncrement(value), "value taken twice: " + value);
+							remaining.decrementAndGet();
+						}
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			for (Future<?> future : producers) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+			for (Future<?> future : consumers) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		for (int i = 0; i < total; i++) {
+			assertEquals(1, taken.get(i), "value never taken: " + i);
+		}
+		assertNull(take.get());
+	}
+}
@@ -0,0 +1,39 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANArrayStackTest {
+
+	@Test
+	void testLifoOrderAcrossGrowth() {
+		HANArrayStack<Integer> stack = new HANArrayStack<>(2);
+		for (int i = 0; i < 100; i++) {
+			stack.push(i);
+			assertEquals(i, stack.peek());
+		}
+		assertEquals(100, stack.getSize());
+		for (int i = 99; i >= 0; i--) {
+			assertEquals(i, stack.peek());
+			assertEquals(i, stack.pop());
+		}
+		assertTrue(stack.isEmpty());
+	}
+
+	@Test
+	void testPopAndPeekOnEmptyStack() {
+		HANArrayStack<String> stack = new HANArrayStack<>();
+		assertNull(stack.pop());
+		assertNull(stack.peek());
+		stack.push("a");
+		assertEquals("a", stack.pop());
+		assertNull(stack.pop());
+		assertEquals(0, stack.getSize());
+	}
+
+	@Test
+	void testRejectsCapacityBelowOne() {
+		assertThrows(IllegalArgumentException.class, () -> new HANArrayStack<>(0));
+	}
+}
@@ -0,0 +1,57 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANLinkedListTest {
+
+	@Test
+	void testIteratesFromHeadToTail() {
+		HANLinkedList<String> list = new HANLinkedList<>();
+		list.addLast("b");
+		list.addFirst("a");
+		list.addLast("d");
+		list.insert(2, "c");
+
+		List<String> seen = new ArrayList<>();
+		for (String value : list) {
+			seen.add(value);
+		}
+		assertEquals(List.of("a", "b", "c", "d"), seen);
+	}
+
+	@Test
+	void testTailFollowsDeletes() {
+		HANLinkedList<Integer> list = new HANLinkedList<>();
+		list.addLast(1);
+		list.addLast(2);
+		list.delete(1);
+		list.addLast(3);
+		assertEquals(3, list.get(1));
+		list.removeFirst();
+		list.removeFirst();
+		list.addLast(4);
+		assertEquals(4, list.getFirst());
+		assertEquals(1, list.getSize());
+	}
+
+	@Test
+	void testSpliteratorFeedsParallelStreams() {
+		HANLinkedList<Integer> list = new HANLinkedList<>();
+		for (int i = 1; i <= 10_000; i++) {
+			list.addLast(i);
+		}
+		Spliterator<Integer> spliterator = list.spliterator();
+		assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+		assertEquals(10_000, spliterator.getExactSizeIfKnown());
+
+		long sum = StreamSupport.stream(list.spliterator(), true).mapToLong(Integer::longValue).sum();
+		assertEquals(50_005_000L, sum);
+	}
+}
@@ -0,0 +1,52 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANPersistentMapTest {
+
+	@Test
+	void testUpdatesLeaveOldVersionsUntouched() {
+		HANPersistentMap<String, Integer> empty = HANPersistentMap.empty();
+		HANPersistentMap<String, Integer> one = empty.put("a", 1);
+		HANPersistentMap<String, Integer> two = one.put("a", 2);
+
+		assertNull(empty.get("a"));
+		assertEquals(1, one.get("a"));
+		assertEquals(2, two.get("a"));
+		assertEquals(1, two.getSize());
+		assertSame(two, two.put("a", 2));
+	}
+
+	@Test
+	void testManyKeysAndHashCollisions() {
+		HANPersistentMap<String, Integer> map = HANPersistentMap.empty();
+		for (int i = 0; i < 5_000; i++) {
+			map = map.put("key" + i, i);
+		}
+		// "Aa" and "BB" have the same hashCode
+		map = map.put("Aa", -1).put("BB", -2);
+
+		assertEquals(5_002, map.getSize());
+		for (int i = 0; i < 5_000; i++) {
+			assertEquals(i, map.get("key" + i));
+		}
+		assertEquals(-1, map.get("Aa"));
+		assertEquals(-2, map.get("BB"));
+		assertFalse(map.containsKey("C#"));
+	}
+
+	@Test
+	void testScopeForkSharesEnclosingBindings() {
+		HANScope<String, String> global = new HANScope<String, String>().define("Color", "#ff0000");
+		HANScope<String, String> rule = global.enter().define("Width", "10px");
+		HANScope<String, String> otherRule = global.enter().define("Color", "#000000");
+
+		assertEquals("#ff0000", rule.lookup("Color"));
+		assertEquals("10px", rule.lookup("Width"));
+		assertEquals("#000000", otherRule.lookup("Color"));
+		assertFalse(global.isDefined("Width"));
+		assertSame(global, rule.exit());
+	}
+}
@@ -0,0 +1,51 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HANQueueTest {
+
+	@Test
+	void testFifoOrderAcrossWrapAroundAndGrowth() {
+		HANQueue<Integer> queue = new HANQueue<>(4);
+		int next = 0;
+		int expected = 0;
+		for (int round = 0; round < 100; round++) {
+			for (int i = 0; i < 3; i++) {
+				queue.enqueue(next++);
+			}
+			assertEquals(expected++, queue.dequeue());
+		}
+		while (!queue.isEmpty()) {
+			assertEquals(expected++, queue.dequeue());
+		}
+		assertEquals(next, expected);
+		assertNull(queue.dequeue());
+	}
+
+	@Test
+	void testBoundedQueueRejectsWhenFull() {
+		HANQueue<String> queue = HANQueue.bounded(3);
+		queue.enqueue("a");
+		queue.enqueue("b");
+		queue.enqueue("c");
+		assertFalse(queue.offer("d"));
+		assertThrows(IllegalStateException.class, () -> queue.enqueue("d"));
+		assertEquals("a", queue.dequeue());
+		assertTrue(queue.offer("d"));
+		assertEquals(3, queue.getSize());
+	}
+
+	@Test
+	void testClearEmptiesQueue() {
+		HANQueue<String> queue = new HANQueue<>();
+		queue.enqueue("a");
+		queue.enqueue("b");
+		queue.clear();
+		assertTrue(queue.isEmpty());
+		assertNull(queue.peek());
+		queue.enqueue("c");
+		assertEquals("c", queue.peek());
+	}
+}
@@ -0,0 +1,89 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTCodecTest {
+
+	@Test
+	void testRoundTripsFixtures() throws IOException {
+		for (AST ast : List.of(Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3())) {
+			AST copy = AST.readFrom(new ByteArrayInputStream(write(ast, 0L)));
+			assertEquals(ast, copy);
+			assertEquals(ast.toString(), copy.toString());
+		}
+	}
+
+	@Test
+	void testKeepsSourcePositions() throws IOException {
+		AST ast;
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+			ast = new ParseContext().parse(CharStreams.fromStream(inputStream), null);
+		}
+		AST copy = AST.readFrom(new ByteArrayInputStream(write(ast, 0L)));
+		assertEquals(Fixtures.positions(ast.root), Fixtures.positions(copy.root));
+	}
+
+	@Test
+	void testChecksSourceHash() throws IOException {
+		byte[] data = write(Fixtures.uncheckedLevel1(), 42L);
+		assertEquals(Fixtures.uncheckedLevel1(), AST.readFrom(new ByteArrayInputStream(data), 42L));
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(data), 43L));
+	}
+
+	@Test
+	void testRejectsOtherFormatsAndCorruptData() throws IOException {
+		byte[] data = write(Fixtures.uncheckedLevel2(), 0L);
+
+		byte[] otherVersion = data.clone();
+		otherVersion[4] = (byte) (ASTCodec.FORMAT_VERSION + 1);
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(otherVersion)));
+
+		byte[] truncated = Arrays.copyOf(data, data.length - 3);
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(truncated)));
+
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream("p { }".getBytes())));
+	}
+
+	@Test
+	void testRejectsCountsLargerThanTheData() {
+		// A name count of -1 after the header
+		byte[] negative = {'I', 'C', 'S', 'A', 1, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f};
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(negative)));
+		byte[] tooMany = {'I', 'C', 'S', 'A', 1, 0, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff, (byte) 0xff, 0x7f};
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(tooMany)));
+		byte[] longName = {'I', 'C', 'S', 'A', 1, 0, 0, 0, 0, 0, 0, 0, 0, 1, 0x7f, 'p'};
+		assertThrows(IOException.class, () -> AST.readFrom(new ByteArrayInputStream(longName)));
+	}
+
+	@Test
+	void testRoundTripsDeepTrees() throws IOException {
+		StringBuilder source = new StringBuilder("p { width: 0px");
+		for (int i = 1; i < 5000; i++) {
+			source.append(" + ").append(i).append("px");
+		}
+		source.append("; }");
+		AST ast = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+		AST copy = AST.readFrom(new ByteArrayInputStream(write(ast, 0L)));
+		assertEquals(ast, copy);
+		assertEquals(Fixtures.positions(ast.root), Fixtures.positions(copy.root));
+	}
+
+	private static byte[] write(AST ast, long sourceHash) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ast.writeTo(out, sourceHash);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,177 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTNodeTest {
+
+	@Test
+	void testChildAtMatchesGetChildren() {
+		for (AST ast : List.of(Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3())) {
+			assertSameChildren(ast.root);
+		}
+	}
+
+	@Test
+	void testChildAtSkipsMissingChildren() {
+		Operation operation = new AddOperation();
+		assertEquals(0, operation.childCount());
+		operation.rhs = new PixelLiteral(1);
+		assertEquals(1, operation.childCount());
+		assertSame(operation.rhs, operation.childAt(0));
+
+		IfClause ifClause = new IfClause();
+		ifClause.addChild(new Declaration("width"));
+		assertEquals(1, ifClause.childCount());
+		assertSame(ifClause.body.get(0), ifClause.childAt(0));
+		assertEquals("[If_Clause|[Declaration|[Property: (width)|]]]", ifClause.toString());
+	}
+
+	@Test
+	void testChildAtOutOfRange() {
+		Stylerule stylerule = new Stylerule(new TagSelector("p"), new ArrayList<>());
+		assertThrows(IndexOutOfBoundsException.class, () -> stylerule.childAt(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> new Declaration("width").childAt(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> new PixelLiteral(1).childAt(0));
+	}
+
+	@Test
+	void testEqualTreesHaveEqualHashes() {
+		assertEquals(Fixtures.uncheckedLevel3(), Fixtures.uncheckedLevel3());
+		assertEquals(Fixtures.uncheckedLevel3().root.hashCode(), Fixtures.uncheckedLevel3().root.hashCode());
+		assertNotEquals(Fixtures.uncheckedLevel2().root.hashCode(), Fixtures.uncheckedLevel3().root.hashCode());
+	}
+
+	@Test
+	void testNodeTypeAndValuesAreCompared() {
+		assertNotEquals(new AddOperation().addChild(new PixelLiteral(1)).addChild(new PixelLiteral(2)),
+				new SubtractOperation().addChild(new PixelLiteral(1)).addChild(new PixelLiteral(2)));
+		assertNotEquals(new Declaration("width"), new Declaration("height"));
+		assertEquals(new Declaration("width"), new Declaration("width"));
+	}
+
+	@Test
+	void testChangesInvalidateCachedHashes() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST other = Fixtures.uncheckedLevel3();
+		assertEquals(other, ast);
+
+		// addChild deep in the tree reaches the root through the cached hashes
+		Stylerule stylerule = (Stylerule) ast.root.body.get(ast.root.body.size() - 1);
+		Declaration declaration = (Declaration) stylerule.body.get(0);
+		int before = ast.root.hashCode();
+		declaration.expression = null;
+		declaration.addChild(new PixelLiteral(7));
+		assertNotEquals(before, ast.root.hashCode());
+		assertNotEquals(other, ast);
+
+		// A field assigned directly needs invalidateHash(), then the trees compare equal again
+		Stylerule original = (Stylerule) other.root.body.get(other.root.body.size() - 1);
+		declaration.expression = ((Declaration) original.body.get(0)).expression;
+		declaration.invalidateHash();
+		assertEquals(other, ast);
+		assertEquals(other.root.hashCode(), ast.root.hashCode());
+	}
+
+	@Test
+	void testChangeInSharedSubtreeInvalidatesEveryTree() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST other = Fixtures.uncheckedLevel3();
+		Stylerule shared = (Stylerule) ast.root.body.get(ast.root.body.size() - 1);
+		other.root.body.set(other.root.body.size() - 1, shared);
+		other.root.invalidateHash();
+		assertEquals(other, ast);
+
+		// Both trees include the changed rule, so neither may keep its old hash
+		shared.addChild(new Declaration("width"));
+		AST fresh = Fixtures.uncheckedLevel3();
+		assertNotEquals(fresh, ast);
+		assertNotEquals(fresh, other);
+		assertEquals(other, ast);
+		shared.body.remove(shared.body.size() - 1);
+		shared.invalidateHash();
+		assertEquals(fresh, ast);
+		assertEquals(fresh, other);
+	}
+
+	@Test
+	void testChangeKeepsHashesOfOtherTrees() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST other = Fixtures.uncheckedLevel3();
+		assertEquals(other, ast);
+		Stylerule unchanged = (Stylerule) ast.root.body.get(4);
+		Stylerule changed = (Stylerule) other.root.body.get(other.root.body.size() - 1);
+
+		// Only the path from the change up to its root is forgotten
+		changed.addChild(new Declaration("width"));
+		assertFalse(changed.hasCachedHash());
+		assertFalse(other.root.hasCachedHash());
+		assertTrue(other.root.body.get(0).hasCachedHash());
+		assertTrue(ast.root.hasCachedHash());
+		assertTrue(unchanged.hasCachedHash());
+		assertNotEquals(other, ast);
+	}
+
+	@Test
+	void testStaleHashIsCaught() {
+		AST ast = Fixtures.uncheckedLevel3();
+		AST other = Fixtures.uncheckedLevel3();
+		Declaration declaration = (Declaration) ((Stylerule) ast.root.body.get(4)).body.get(0);
+		declaration.expression = new PixelLiteral(7);
+		declaration.invalidateHash();
+		assertNotEquals(other, ast);
+
+		// The same assignment without invalidateHash() leaves the old hash cached in other
+		Declaration stale = (Declaration) ((Stylerule) other.root.body.get(4)).body.get(0);
+		stale.expression = new PixelLiteral(7);
+		assertThrows(AssertionError.class, () -> ast.equals(other));
+	}
+
+	@Test
+	void testAcceptCallsMostSpecificVisitMethod() {
+		ASTVisitor<String, Void> visitor = new ASTVisitor<>() {
+			@Override
+			public String visitNode(ASTNode node, Void context) {
+				return "node";
+			}
+
+			@Override
+			public String visitLiteral(Literal node, Void context) {
+				return "literal";
+			}
+
+			@Override
+			public String visitAddOperation(AddOperation node, Void context) {
+				return "add";
+			}
+		};
+		assertEquals("literal", new PixelLiteral(1).accept(visitor, null));
+		assertEquals("add", new AddOperation().accept(visitor, null));
+		assertEquals("node", new SubtractOperation().accept(visitor, null));
+		assertEquals("node", new TagSelector("p").accept(visitor, null));
+		assertEquals("node", new Declaration("width").accept(visitor, null));
+	}
+
+	private void assertSameChildren(ASTNode node) {
+		List<ASTNode> children = node.getChildren();
+		List<ASTNode> visited = new ArrayList<>();
+		node.forEachChild(visited::add);
+		assertEquals(children.size(), node.childCount(), node.getNodeLabel());
+		assertEquals(children.size(), visited.size(), node.getNodeLabel());
+		for (int i = 0; i < children.size(); i++) {
+			assertSame(children.get(i), node.childAt(i));
+			assertSame(children.get(i), visited.get(i));
+			assertSameChildren(children.get(i));
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactASTTest {
+
+	@Test
+	void testRoundTripsFixtures() {
+		for (AST ast : List.of(Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3())) {
+			AST copy = CompactAST.fromAST(ast).toAST();
+			assertEquals(ast, copy);
+			assertEquals(ast.toString(), copy.toString());
+		}
+	}
+
+	@Test
+	void testKeepsSourcePositions() throws IOException {
+		AST ast;
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+			ast = new ParseContext().parse(CharStreams.fromStream(inputStream), null);
+		}
+		assertEquals(Fixtures.positions(ast.root), Fixtures.positions(CompactAST.fromAST(ast).toAST().root));
+	}
+
+	@Test
+	void testNavigatesLikeChildAt() {
+		AST ast = Fixtures.uncheckedLevel3();
+		CompactAST compact = CompactAST.fromAST(ast);
+		assertEquals(CompactAST.Kind.STYLESHEET, compact.kind(CompactAST.ROOT));
+		assertSameShape(ast.root, compact, CompactAST.ROOT);
+
+		int count = 0;
+		for (int statement = compact.firstChild(CompactAST.ROOT); statement != CompactAST.NONE; statement = compact.nextSibling(statement)) {
+			assertEquals(ast.root.body.get(count), compact.toASTNode(statement));
+			count++;
+		}
+		assertEquals(ast.root.body.size(), count);
+	}
+
+	@Test
+	void testAppendGrowsTheStylesheet() {
+		CompactAST compact = new CompactAST();
+		for (int i = 0; i < 1000; i++) {
+			Declaration declaration = new Declaration("width");
+			declaration.addChild(new PixelLiteral(i));
+			Stylerule stylerule = new Stylerule();
+			stylerule.addChild(new TagSelector("p")).addChild(declaration);
+			compact.append(stylerule);
+		}
+		assertEquals(1 + 1000 * 5, compact.nodeCount());
+		AST ast = compact.toAST();
+		assertEquals(1000, ast.root.body.size());
+		assertEquals(new PixelLiteral(999), ((Declaration) ((Stylerule) ast.root.body.get(999)).body.get(0)).expression);
+		// "p" and "width" are stored once each
+		assertTrue(compact.bytesUsed() < 1000 * 5 * 64);
+	}
+
+	@Test
+	void testCopiesDeepTrees() {
+		StringBuilder source = new StringBuilder("p { width: 0px");
+		for (int i = 1; i < 5000; i++) {
+			source.append(" + 1px");
+		}
+		source.append("; }");
+		AST ast = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+		CompactAST compact = CompactAST.fromAST(ast);
+		assertEquals(1 + 3 + 2 * 5000, compact.nodeCount());
+		assertEquals(ast, compact.toAST());
+	}
+
+	@Test
+	void testPipelineCompilesOneStatementAtATime() throws IOException {
+		String source = generatedSheet(2000);
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(source);
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		pipeline.transform();
+		String expected = pipeline.generate();
+
+		Pipeline compiling = new Pipeline();
+		CompactAST compact = compiling.parseCompact(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)));
+		assertNotNull(compact, compiling.getErrors().toString());
+		assertEquals(expected, compiling.compile(compact));
+		assertEquals(List.of(), compiling.getErrors());
+		assertNull(compiling.getAST());
+
+		// The errors are those of check(), and no CSS is generated
+		String wrong = source + "Late := Width + 10%;\nh1 { width: Late; color: Undefined; }\n";
+		pipeline.parseString(wrong);
+		assertFalse(pipeline.check());
+		List<String> expectedErrors = new ArrayList<>(pipeline.getErrors());
+		assertNull(compiling.compile(compiling.parseCompact(new ByteArrayInputStream(wrong.getBytes(StandardCharsets.UTF_8)))));
+		assertEquals(expectedErrors, compiling.getErrors());
+		assertEquals(3, expectedErrors.size(), expectedErrors.toString());
+	}
+
+	@Test
+	void testPipelineParsesInvalidInputToNull() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		// Recovery leaves the if clause without a condition
+		for (String source : List.of("p { if[] { width: 1px; } }", "a { width: 1px; }\np { if[] { width: 1px; } }\nh1 { width: 2px; }", "p { width: ; }")) {
+			assertNull(pipeline.parseCompact(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8))), source);
+			assertFalse(pipeline.getErrors().isEmpty(), source);
+		}
+
+		// The recovered tree without the missing condition can still be kept and rebuilt
+		CompactAST compact = new ParseContext().parseStreamingCompact(CharStreams.fromString("p { if[] { width: 1px; } }"), null);
+		assertTrue(compact.toAST().toString().startsWith("[Stylesheet|[Stylerule|[TagSelector p|][If_Clause|]"));
+	}
+
+	// Rules that use the globals assigned before them, with if clauses and sums
+	private static String generatedSheet(int rules) {
+		StringBuilder source = new StringBuilder("Width := 10px;\nWide := TRUE;\n");
+		for (int i = 0; i < rules; i++) {
+			if (i % 100 == 0) {
+				source.append("Width := Width + ").append(i).append("px;\n");
+				source.append("Wide := ").append(i % 200 == 0 ? "FALSE" : "TRUE").append(";\n");
+			}
+			source.append(i % 3 == 0 ? "#id" : i % 3 == 1 ? ".class" : "p").append(i).append(" {\n");
+			source.append("\twidth: Width + ").append(i % 17).append("px * 2;\n");
+			source.append("\tif [Wide] { height: Width; } else { color: #00ff00; }\n");
+			source.append("}\n");
+		}
+		return source.toString();
+	}
+
+	private void assertSameShape(ASTNode node, CompactAST compact, int index) {
+		assertEquals(node.getStart(), compact.getStart(index));
+		int child = compact.firstChild(index);
+		for (int i = 0; i < node.childCount(); i++) {
+			assertNotEquals(CompactAST.NONE, child, node.getNodeLabel());
+			assertEquals(node.childAt(i).getNodeLabel(), compact.toASTNode(child).getNodeLabel());
+			assertSameShape(node.childAt(i), compact, child);
+			child = compact.nextSibling(child);
+		}
+		assertEquals(CompactAST.NONE, child, node.getNodeLabel());
+	}
+}
@@ -0,0 +1,76 @@
+package nl.han.ica.icss.ast.literals;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.transforms.Evaluator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiteralFactoryTest {
+
+	@Test
+	void testSharesCommonValues() {
+		assertSame(LiteralFactory.bool(true), LiteralFactory.bool(true));
+		assertSame(LiteralFactory.pixel(10), LiteralFactory.pixel(10));
+		assertSame(LiteralFactory.percentage(-5), LiteralFactory.percentage(-5));
+		assertSame(LiteralFactory.scalar(1024), LiteralFactory.scalar(1024));
+		assertSame(LiteralFactory.color(0xabcdef), LiteralFactory.color(0xabcdef));
+		assertNotSame(LiteralFactory.pixel(100_000), LiteralFactory.pixel(100_000));
+		assertEquals(new PixelLiteral(100_000), LiteralFactory.pixel(100_000));
+		assertEquals(new PercentageLiteral(50), LiteralFactory.percentage(50));
+		assertEquals(new BoolLiteral(false), LiteralFactory.bool(false));
+	}
+
+	@Test
+	void testColorIsPackedAndFormattedOnDemand() {
+		ColorLiteral color = new ColorLiteral("#00ff0a");
+		assertEquals(0x00ff0a, color.value);
+		assertEquals("#00ff0a", color.toHexString());
+		assertEquals("Color literal (#00ff0a)", color.getNodeLabel());
+		assertEquals(color, LiteralFactory.color(0x00ff0a));
+		assertEquals("#000000", new ColorLiteral(0).toHexString());
+	}
+
+	@Test
+	void testParsesTextWithUnit() {
+		assertEquals(120, new PixelLiteral("120px").value);
+		assertEquals(-3, new PercentageLiteral("-3%").value);
+	}
+
+	@Test
+	void testHashingTreesLeavesSharedLiteralsUntouched() throws IllegalAccessException {
+		PixelLiteral shared = LiteralFactory.pixel(520);
+		String before = fieldValues(shared);
+
+		// level3 evaluates ParWidth + 20 to the shared 520px
+		AST ast = Fixtures.uncheckedLevel3();
+		new Evaluator().apply(ast);
+		assertTrue(ast.toString().contains("Pixel literal (520)"));
+		ast.hashCode();
+		assertNotEquals(Fixtures.uncheckedLevel3(), ast);
+		shared.hashCode();
+
+		assertEquals(before, fieldValues(shared));
+	}
+
+	private String fieldValues(ASTNode node) throws IllegalAccessException {
+		StringBuilder values = new StringBuilder();
+		for (Class<?> type = node.getClass(); type != Object.class; type = type.getSuperclass()) {
+			for (Field field : type.getDeclaredFields()) {
+				if (Modifier.isStatic(field.getModifiers())) {
+					continue;
+				}
+				field.setAccessible(true);
+				Object value = field.get(node);
+				assertFalse(value instanceof ASTNode, field.getName());
+				values.append(field.getName()).append('=').append(value).append(' ');
+			}
+		}
+		return values.toString();
+	}
+}
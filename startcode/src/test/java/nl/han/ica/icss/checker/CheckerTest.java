@@ -0,0 +1,127 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.SourcePosition;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckerTest {
+
+	@Test
+	void testChecksLongSum() {
+		assertEquals(List.of(), check(sum(10000, -1)));
+	}
+
+	@Test
+	void testLongSumReportsEveryAdditionAfterTheWrongTerm() {
+		List<String> errors = check(sum(5000, 4000));
+		// The addition of the term, every addition after it because their left side has no type,
+		// and the declaration that uses the sum
+		assertEquals(1001, errors.size());
+		assertEquals("ERROR at 1:7: Can not add PIXEL to PERCENTAGE", errors.get(0));
+		assertEquals("ERROR at 1:7: Can not add null to PIXEL", errors.get(1));
+		assertEquals("ERROR at 3:1: Property 'width' can only be of type pixel or percentage literal", errors.get(1000));
+	}
+
+	@Test
+	void testReportsColumnsOnLongLines() {
+		// Minified: one line, the wrong declaration far past column 511
+		StringBuilder source = new StringBuilder("p {");
+		for (int i = 0; i < 100; i++) {
+			source.append(" width: ").append(i).append("px;");
+		}
+		int column = source.length() + 1;
+		source.append(" color: 3px; }");
+		List<String> errors = check(source.toString());
+		assertEquals(1, errors.size());
+		assertTrue(errors.get(0).startsWith("ERROR at 1:" + column + ": "), errors.get(0));
+
+		AST ast = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+		ASTNode declaration = ast.root.body.get(0).childAt(101);
+		assertEquals(column, declaration.getColumn());
+		assertEquals(1, SourcePosition.line(declaration.getStop()));
+		assertEquals(column + "color: 3px;".length() - 1, SourcePosition.column(declaration.getStop()));
+		assertEquals(source.length() - 1, SourcePosition.column(ast.root.getStop()));
+	}
+
+	@Test
+	void testPositionsThatDoNotFitAreUnknown() {
+		long last = SourcePosition.of(SourcePosition.MAX_OFFSET, SourcePosition.MAX_LINE, SourcePosition.MAX_COLUMN);
+		assertEquals(SourcePosition.MAX_OFFSET, SourcePosition.offset(last));
+		assertEquals(SourcePosition.MAX_LINE, SourcePosition.line(last));
+		assertEquals(SourcePosition.MAX_COLUMN, SourcePosition.column(last));
+		assertEquals(SourcePosition.UNKNOWN, SourcePosition.of(SourcePosition.MAX_OFFSET + 1, 1, 0));
+		assertEquals(SourcePosition.UNKNOWN, SourcePosition.of(0, SourcePosition.MAX_LINE + 1, 0));
+		assertEquals(SourcePosition.UNKNOWN, SourcePosition.shift(last, 1, 0, 0, 0));
+
+		// Past column 65535 the error has no position instead of a wrong one
+		StringBuilder source = new StringBuilder("p {");
+		while (source.length() <= SourcePosition.MAX_COLUMN) {
+			source.append(" width: 1px;");
+		}
+		List<String> errors = check(source.append(" color: 3px; }").toString());
+		assertEquals(List.of("ERROR: Property 'color' can only be of type color literal"), errors);
+	}
+
+	@Test
+	void testParallelCheckReportsLikeSequentialCheck() {
+		// Globals between the rules: a rule may only use the ones assigned before it
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			if (i % 10 == 0) {
+				source.append("Var").append(i).append(" := ").append(i % 20 == 0 ? "1px" : "#ffffff").append(";\n");
+			}
+			source.append("#r").append(i).append(" {\n")
+					.append("\twidth: Var").append((i / 10) * 10 + (i % 3 == 0 ? 10 : 0)).append(";\n")
+					.append("\tif [TRUE] { Local := 2px; color: Local + 1px; }\n")
+					.append("}\n");
+		}
+		AST sequential = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+		AST parallel = new ParseContext().parse(CharStreams.fromString(source.toString()), null);
+
+		Diagnostics sequentialErrors = new Diagnostics();
+		sequentialErrors.collect(() -> new Checker().check(sequential));
+		Diagnostics parallelErrors = new Diagnostics();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			parallelErrors.collect(() -> new Checker().checkParallel(parallel, pool));
+		} finally {
+			pool.shutdown();
+		}
+
+		assertTrue(sequentialErrors.size() > 1000);
+		assertEquals(toStrings(sequentialErrors.getErrors()), toStrings(parallelErrors.getErrors()));
+		assertEquals(toStrings(sequential.getErrors()), toStrings(parallel.getErrors()));
+	}
+
+	private static String sum(int terms, int percentageTerm) {
+		StringBuilder source = new StringBuilder("Sum := 1px");
+		for (int i = 1; i < terms; i++) {
+			source.append(" + ").append(i % 7).append(i == percentageTerm ? "%" : "px");
+		}
+		return source.append(";\np {\n\twidth: Sum;\n}\n").toString();
+	}
+
+	private static List<String> check(String source) {
+		AST ast = new ParseContext().parse(CharStreams.fromString(source), null);
+		Diagnostics diagnostics = new Diagnostics();
+		diagnostics.collect(() -> new Checker().check(ast));
+		return toStrings(diagnostics.getErrors());
+	}
+
+	private static List<String> toStrings(List<SemanticError> errors) {
+		List<String> strings = new ArrayList<>();
+		for (SemanticError error : errors) {
+			strings.add(error.toString());
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,75 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.parser.ParseContext;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiagnosticsTest {
+
+	private static final String SOURCE = "Width := 10px;\n"
+			+ "p {\n"
+			+ "\twidth: #ff0000;\n"
+			+ "\tcolor: Missing;\n"
+			+ "\tborder: 1px;\n"
+			+ "}\n";
+
+	@Test
+	void testCollectsWhatTheTreeHolds() {
+		AST ast = new ParseContext().parse(CharStreams.fromString(SOURCE), null);
+		List<String> streamed = new ArrayList<>();
+		Diagnostics diagnostics = new Diagnostics((node, error) -> streamed.add(error.toString()));
+		diagnostics.collect(() -> new Checker().check(ast));
+
+		assertEquals(3, diagnostics.size());
+		assertEquals(toStrings(ast.getErrors()), toStrings(diagnostics.getErrors()));
+		assertEquals(toStrings(diagnostics.getErrors()), streamed);
+		for (int i = 0; i < diagnostics.size(); i++) {
+			assertSame(diagnostics.getNodes().get(i).getError(), diagnostics.getErrors().get(i));
+		}
+	}
+
+	@Test
+	void testOnlyCollectsOnItsOwnThreadWhileRunning() {
+		Diagnostics outer = new Diagnostics();
+		Diagnostics inner = new Diagnostics();
+		ASTNode node = new PixelLiteral(1);
+
+		node.setError("before");
+		outer.collect(() -> {
+			node.setError("outer");
+			inner.collect(() -> node.setError("inner"));
+			node.setError("outer again");
+		});
+		Thread thread = new Thread(() -> node.setError("other thread"));
+		outer.collect(() -> {
+			thread.start();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		assertEquals(List.of("ERROR: outer", "ERROR: outer again"), toStrings(outer.getErrors()));
+		assertEquals(List.of("ERROR: inner"), toStrings(inner.getErrors()));
+		assertEquals(new HashSet<>(List.of(node)), new HashSet<>(outer.getNodes()));
+		assertNull(Diagnostics.current());
+	}
+
+	private static List<String> toStrings(List<SemanticError> errors) {
+		List<String> strings = new ArrayList<>();
+		for (SemanticError error : errors) {
+			strings.add(error.toString());
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,98 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ASTCacheTest {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void testLoadsWhatWasStored() throws IOException {
+		String source = level3();
+		ASTCache cache = new ASTCache(directory.resolve("cache"));
+		assertNull(cache.load(source));
+
+		AST ast = new ParseContext().parse(CharStreams.fromString(source), null);
+		cache.store(source, ast);
+		AST loaded = cache.load(source);
+		assertEquals(ast, loaded);
+		assertEquals(Fixtures.positions(ast.root), Fixtures.positions(loaded.root));
+		assertNull(cache.load(source + " "));
+	}
+
+	@Test
+	void testCorruptFileIsAMiss() throws IOException {
+		String source = level3();
+		ASTCache cache = new ASTCache(directory);
+		cache.store(source, new ParseContext().parse(CharStreams.fromString(source), null));
+		try (var files = Files.list(directory)) {
+			Path file = files.findFirst().orElseThrow();
+			Files.write(file, new byte[] {'I', 'C', 'S', 'A', 1});
+		}
+		assertNull(cache.load(source));
+	}
+
+	@Test
+	void testNegativeCountIsAMiss() throws IOException {
+		String source = level3();
+		ASTCache cache = new ASTCache(directory);
+		cache.store(source, new ParseContext().parse(CharStreams.fromString(source), null));
+		try (var files = Files.list(directory)) {
+			Path file = files.findFirst().orElseThrow();
+			byte[] data = Files.readAllBytes(file);
+			// Keep the header with the source hash, then a name count of -1
+			byte[] corrupt = Arrays.copyOf(data, 18);
+			corrupt[13] = corrupt[14] = corrupt[15] = corrupt[16] = (byte) 0xff;
+			corrupt[17] = 0x0f;
+			Files.write(file, corrupt);
+		}
+		assertNull(cache.load(source));
+	}
+
+	@Test
+	void testPipelineCachesDeepTrees() throws IOException {
+		StringBuilder source = new StringBuilder("p { width: 0px");
+		for (int i = 1; i < 5000; i++) {
+			source.append(" + 1px");
+		}
+		source.append("; }");
+
+		AST parsed = null;
+		for (int run = 0; run < 2; run++) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setCacheDirectory(directory);
+			pipeline.parseString(source.toString());
+			assertTrue(pipeline.isParsed());
+			assertTrue(pipeline.check(), pipeline.getErrors().toString());
+			if (parsed == null) {
+				parsed = pipeline.getAST();
+			} else {
+				// Loaded from the file the first run stored
+				assertNotSame(parsed, pipeline.getAST());
+				assertEquals(parsed, pipeline.getAST());
+			}
+		}
+		try (var files = Files.list(directory)) {
+			assertEquals(1, files.count());
+		}
+	}
+
+	private String level3() throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("level3.icss")) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.Pipeline;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionProfileTest {
+
+	private static final String[] RESOURCES = {"level0.icss", "level1.icss", "level2.icss", "level3.icss"};
+
+	@Test
+	void testExpressionDecisionsStayInSLL() throws IOException {
+		ParseContext context = new ParseContext();
+		context.setProfile(true);
+		for (String resource : RESOURCES) {
+			context.parse(CharStreams.fromString(read(resource)), null);
+			DecisionProfile profile = context.getLastProfile();
+			int expressionDecisions = 0;
+			for (DecisionInfo decision : profile.getDecisions()) {
+				if (decision.invocations == 0) {
+					continue;
+				}
+				String where = resource + " decision " + decision.decision + " in " + profile.getRule(decision.decision);
+				if (profile.getRule(decision.decision).equals("expression")) {
+					expressionDecisions++;
+					assertTrue(decision.SLL_MaxLook <= 2, where);
+				}
+				assertEquals(0, decision.LL_Fallback, where);
+				assertEquals(0, decision.ambiguities.size(), where);
+			}
+			assertTrue(expressionDecisions > 0 || resource.equals("level0.icss"), resource);
+		}
+	}
+
+	@Test
+	void testPipelineReportsProfileAsTable() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		assertNull(pipeline.getProfileReport());
+		pipeline.setProfiling(true);
+		pipeline.parseString(read("level3.icss"));
+		assertTrue(pipeline.isParsed());
+
+		String[] lines = pipeline.getProfileReport().split("\n");
+		assertTrue(lines[0].startsWith("decision"), lines[0]);
+		int expressionRows = 0;
+		for (int i = 1; i < lines.length; i++) {
+			// decision, rule, invocations, time, SLL k avg, SLL k max, LL fallbacks, LL k max, ambiguities, ...
+			String[] columns = lines[i].trim().split("\\s+");
+			assertTrue(Integer.parseInt(columns[2]) > 0, lines[i]);
+			assertEquals("0", columns[6], lines[i]);
+			assertEquals("0", columns[8], lines[i]);
+			if (columns[1].equals("expression")) {
+				expressionRows++;
+				assertTrue(Integer.parseInt(columns[5]) <= 2, lines[i]);
+			}
+		}
+		assertTrue(expressionRows > 0);
+	}
+
+	private String read(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+}
@@ -11,6 +11,8 @@ import nl.han.ica.icss.ast.selectors.ClassSelector;
 import nl.han.ica.icss.ast.selectors.IdSelector;
 import nl.han.ica.icss.ast.selectors.TagSelector;
 
+import java.util.ArrayList;
+
 public class Fixtures {
 
     public static AST uncheckedLevel0() {
@@ -326,4 +328,30 @@ public class Fixtures {
 
 		return new AST(stylesheet);
 	}
+
+	/*
+	 Lists every node with its start and stop position, in tree order, for comparing where
+	 different parsers put the nodes. Error recovery can leave null children, which are listed too.
+	 */
+	public static String positions(ASTNode node) {
+		StringBuilder result = new StringBuilder();
+		// A stack instead of recursion, sums can be thousands of nodes deep
+		ArrayList<ASTNode> stack = new ArrayList<>();
+		stack.add(node);
+		while (!stack.isEmpty()) {
+			ASTNode next = stack.remove(stack.size() - 1);
+			if (next == null) {
+				result.append("null\n");
+				continue;
+			}
+			result.append(next.getNodeLabel()).append(' ')
+					.append(SourcePosition.offset(next.getStart())).append('@').append(SourcePosition.toString(next.getStart())).append('-')
+					.append(SourcePosition.offset(next.getStop())).append('@').append(SourcePosition.toString(next.getStop())).append('\n');
+			ArrayList<ASTNode> children = next.getChildren();
+			for (int i = children.size() - 1; i >= 0; i--) {
+				stack.add(children.get(i));
+			}
+		}
+		return result.toString();
+	}
 }
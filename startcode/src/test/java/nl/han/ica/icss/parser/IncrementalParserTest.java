@@ -0,0 +1,123 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import org.antlr.v4.runtime.CharStreams;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalParserTest {
+
+	@Test
+	void testEditKeepsUntouchedNodes() throws IOException {
+		String source = readResource("level3.icss");
+		IncrementalParser parser = new IncrementalParser();
+		AST ast = parser.parse(source);
+		assertEquals(Fixtures.uncheckedLevel3(), ast);
+		List<ASTNode> before = new ArrayList<>(ast.root.body);
+
+		int offset = source.indexOf("20px;");
+		AST edited = parser.edit(offset, 4, "25px");
+
+		String expected = source.substring(0, offset) + "25px" + source.substring(offset + 4);
+		assertEquals(parse(expected), edited);
+		assertEquals(Fixtures.positions(parse(expected).root.body.get(4)), Fixtures.positions(edited.root.body.get(4)));
+		assertEquals(expected, parser.getText());
+		int changed = 0;
+		for (int i = 0; i < before.size(); i++) {
+			if (before.get(i) != edited.root.body.get(i)) {
+				changed++;
+			}
+		}
+		assertEquals(1, changed);
+	}
+
+	@Test
+	void testEditsThatMoveBoundaries() {
+		IncrementalParser parser = new IncrementalParser();
+		parser.parse("A := 1px;\np { width: A; }\na { width: 2px; }");
+
+		// Removing a closing brace merges two rules, adding it back splits them again
+		parser.edit(parser.getText().indexOf('}'), 1, "");
+		assertFalse(parser.getErrors().isEmpty());
+		parser.edit(parser.getText().indexOf("\na"), 0, "}");
+		assertTrue(parser.getErrors().isEmpty());
+		assertEquals(parse("A := 1px;\np { width: A; }\na { width: 2px; }"), parser.getAST());
+		assertEquals(Fixtures.positions(parse("A := 1px;\np { width: A; }\na { width: 2px; }").root.body.get(2)),
+				Fixtures.positions(parser.getAST().root.body.get(2)));
+
+		parser.edit(0, parser.getText().length(), "");
+		assertTrue(parser.getAST().root.body.isEmpty());
+		parser.edit(0, 0, "b { color: #ffffff; }");
+		assertEquals(parse("b { color: #ffffff; }"), parser.getAST());
+	}
+
+	@Test
+	void testEditBeforeDeepSumMovesItsPositions() {
+		StringBuilder source = new StringBuilder("a { width: 1px; }\nDeep := 1px");
+		for (int term = 1; term < 10000; term++) {
+			source.append(" + 1px");
+		}
+		source.append(";\n");
+		IncrementalParser parser = new IncrementalParser();
+		parser.parse(source.toString());
+		AST edited = parser.edit(source.indexOf("1px"), 3, "\n100px");
+
+		AST expected = parse(parser.getText());
+		assertEquals(2, edited.root.body.size());
+		for (int i = 0; i < 2; i++) {
+			assertEquals(Fixtures.positions(expected.root.body.get(i)), Fixtures.positions(edited.root.body.get(i)));
+		}
+	}
+
+	@Test
+	void testRandomEditsMatchParsingFromScratch() throws IOException {
+		String[] fragments = {"{", "}", ";", " p { width: 1px; } ", "A := 2px;", "color", ": ", "#ff0000", "\n", "if[TRUE] {", ""};
+		Random random = new Random(7);
+		IncrementalParser parser = new IncrementalParser();
+		parser.parse(readResource("level2.icss"));
+		for (int round = 0; round < 500; round++) {
+			int length = parser.getText().length();
+			int offset = random.nextInt(length + 1);
+			int removed = random.nextInt(Math.min(10, length - offset) + 1);
+			parser.edit(offset, removed, fragments[random.nextInt(fragments.length)]);
+
+			IncrementalParser fromScratch = new IncrementalParser();
+			AST expected = fromScratch.parse(parser.getText());
+			assertEquals(describe(expected.root), describe(parser.getAST().root), parser.getText());
+			for (int i = 0; i < expected.root.body.size(); i++) {
+				assertEquals(Fixtures.positions(expected.root.body.get(i)), Fixtures.positions(parser.getAST().root.body.get(i)), parser.getText());
+			}
+			assertEquals(fromScratch.getErrors(), parser.getErrors(), parser.getText());
+		}
+	}
+
+	// Like toString, but error recovery can leave null children (an if-clause without condition)
+	private String describe(ASTNode node) {
+		if (node == null) {
+			return "null";
+		}
+		StringBuilder description = new StringBuilder("[").append(node.getNodeLabel()).append("|");
+		for (ASTNode child : node.getChildren()) {
+			description.append(describe(child));
+		}
+		return description.append("]").toString();
+	}
+
+	private AST parse(String input) {
+		return new ParseContext().parse(CharStreams.fromString(input), null);
+	}
+
+	private String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+}
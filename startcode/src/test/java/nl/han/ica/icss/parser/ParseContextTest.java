@@ -0,0 +1,223 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.CompactAST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Operation;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.SourcePosition;
+import nl.han.ica.icss.ast.Stylerule;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.UnbufferedCharStream;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseContextTest {
+
+	private static final String[] BROKEN_INPUTS = {
+			"p { width: 10px\na { color: #ff0000; }",
+			"p { width: 10px; $ color: #ff0000; }\na { color: ; }",
+			"Width := 10px\np { width: Width; }",
+			"p { if[TRUE] { width: 1px; } else { if[FALSE] { width: 2px; } } }",
+			"p { width: 1px + ; } ~ a { color: #000000; }",
+	};
+
+	@Test
+	void testTwoStageReportsSameErrorsAsLL() {
+		for (String input : BROKEN_INPUTS) {
+			List<String> llErrors = new ArrayList<>();
+			List<String> twoStageErrors = new ArrayList<>();
+
+			AST llAst = parse(input, false, llErrors);
+			AST twoStageAst = parse(input, true, twoStageErrors);
+
+			assertFalse(llErrors.isEmpty(), input);
+			assertEquals(llErrors, twoStageErrors, input);
+			assertEquals(llAst, twoStageAst, input);
+		}
+	}
+
+	@Test
+	void testTwoStageParsesFixtures() throws IOException {
+		List<String> errors = new ArrayList<>();
+		assertEquals(Fixtures.uncheckedLevel3(), parse(readResource("level3.icss"), true, errors));
+		assertTrue(errors.isEmpty());
+	}
+
+	@Test
+	void testOnePassBuildsSameAstAsParseTreeWalk() throws IOException {
+		List<String> inputs = new ArrayList<>(List.of(BROKEN_INPUTS));
+		for (String resource : new String[]{"level0.icss", "level1.icss", "level2.icss", "level3.icss"}) {
+			inputs.add(readResource(resource));
+		}
+		for (String input : inputs) {
+			List<String> treeErrors = new ArrayList<>();
+			List<String> onePassErrors = new ArrayList<>();
+			ParseContext context = new ParseContext();
+
+			context.setBuildParseTree(true);
+			AST treeAst = context.parse(CharStreams.fromString(input), collect(treeErrors));
+			context.setBuildParseTree(false);
+			AST onePassAst = context.parse(CharStreams.fromString(input), collect(onePassErrors));
+
+			assertEquals(treeErrors, onePassErrors, input);
+			assertEquals(treeAst, onePassAst, input);
+			assertEquals(treeAst.toString(), onePassAst.toString(), input);
+			assertEquals(Fixtures.positions(treeAst.root), Fixtures.positions(onePassAst.root), input);
+		}
+	}
+
+	@Test
+	void testParallelMatchesSequentialParse() throws IOException {
+		String level3 = readResource("level3.icss");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 400; i++) {
+			input.append(i == 250 ? level3.replace("height: 20px;", "height: 20px; $ width: 1px + ;") : level3).append('\n');
+		}
+		List<String> sequentialErrors = new ArrayList<>();
+		List<String> parallelErrors = new ArrayList<>();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			AST sequential = new ParseContext().parse(CharStreams.fromString(input.toString()), collect(sequentialErrors));
+			AST parallel = ParseContext.parseParallel(input.toString(), collect(parallelErrors), pool);
+
+			assertEquals(2, sequentialErrors.size());
+			assertEquals(sequentialErrors, parallelErrors);
+			assertEquals(sequential, parallel);
+			assertEquals(Fixtures.positions(sequential.root), Fixtures.positions(parallel.root));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testParallelParsesDeepSums() throws IOException {
+		String level3 = readResource("level3.icss");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			input.append(level3).append('\n');
+			if (i == 100) {
+				// One part holds a sum as deep as it has terms
+				input.append("Deep := 1px");
+				for (int term = 1; term < 10000; term++) {
+					input.append(" + 1px");
+				}
+				input.append(";\n");
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			AST sequential = new ParseContext().parse(CharStreams.fromString(input.toString()), null);
+			AST parallel = ParseContext.parseParallel(input.toString(), null, pool);
+			// Lists every node in order, without recursing like equals does
+			assertEquals(Fixtures.positions(sequential.root), Fixtures.positions(parallel.root));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void testNodesKnowTheirSourcePosition() throws IOException {
+		AST ast = new ParseContext().parse(CharStreams.fromString(readResource("level3.icss")), null);
+		Stylerule rule = (Stylerule) ast.root.body.get(5);
+		Declaration declaration = (Declaration) rule.body.get(0);
+
+		assertEquals(19, rule.selectors.get(0).getLine());
+		assertEquals(19, rule.getLine());
+		assertEquals(0, rule.getColumn());
+		assertEquals(21, SourcePosition.line(rule.getStop()));
+		assertEquals(20, declaration.getLine());
+		assertEquals(1, declaration.getColumn());
+		assertEquals(20, declaration.expression.getLine());
+		assertEquals(8, declaration.expression.getColumn());
+		assertEquals(17, SourcePosition.column(declaration.getStop()));
+	}
+
+	@Test
+	void testAddAndSubtractAreLeftAssociative() {
+		AST ast = new ParseContext().parse(CharStreams.fromString("p { width: 1px - 2px + 3px * 2; }"), null);
+		Declaration declaration = (Declaration) ((Stylerule) ast.root.body.get(0)).body.get(0);
+
+		Operation expected = (Operation) new AddOperation()
+				.addChild(new SubtractOperation().addChild(new PixelLiteral(1)).addChild(new PixelLiteral(2)))
+				.addChild(new MultiplyOperation().addChild(new PixelLiteral(3)).addChild(new ScalarLiteral(2)));
+		assertEquals(expected.toString(), declaration.expression.toString());
+	}
+
+	@Test
+	void testStreamingParsesFixtures() throws IOException {
+		String[] resources = {"level0.icss", "level1.icss", "level2.icss", "level3.icss"};
+		AST[] expected = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(), Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		for (int i = 0; i < resources.length; i++) {
+			try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resources[i])) {
+				AST ast = new ParseContext().parseStreaming(new UnbufferedCharStream(inputStream), null);
+				assertEquals(expected[i], ast, resources[i]);
+			}
+		}
+	}
+
+	@Test
+	void testStreamingRecoversFromBrokenRules() {
+		List<String> errors = new ArrayList<>();
+		AST ast = new ParseContext().parseStreaming(new UnbufferedCharStream(new StringReader(
+				"p { width: 10px; } } a { color: #ff0000; }")), collect(errors));
+		assertFalse(errors.isEmpty());
+		assertEquals(2, ast.root.getChildren().size());
+	}
+
+	@Test
+	void testStreamingCompactMatchesStreaming() throws IOException {
+		String level3 = readResource("level3.icss");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			input.append(i == 30 ? level3.replace("height: 20px;", "height: 20px; $ width: 1px + ;") : level3).append('\n');
+		}
+		List<String> errors = new ArrayList<>();
+		List<String> compactErrors = new ArrayList<>();
+		AST expected = new ParseContext().parseStreaming(CharStreams.fromString(input.toString()), collect(errors));
+		CompactAST compact = new ParseContext().parseStreamingCompact(CharStreams.fromString(input.toString()), collect(compactErrors));
+
+		assertFalse(errors.isEmpty());
+		assertEquals(errors, compactErrors);
+		AST actual = compact.toAST();
+		assertEquals(expected, actual);
+		assertEquals(Fixtures.positions(expected.root), Fixtures.positions(actual.root));
+	}
+
+	private String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+
+	private AST parse(String input, boolean twoStage, List<String> errors) {
+		ParseContext context = new ParseContext();
+		context.setTwoStage(twoStage);
+		return context.parse(CharStreams.fromString(input), collect(errors));
+	}
+
+	private BaseErrorListener collect(List<String> errors) {
+		return new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+									int charPositionInLine, String msg, RecognitionException e) {
+				errors.add(line + ":" + charPositionInLine + " " + msg);
+			}
+		};
+	}
+}
@@ -0,0 +1,125 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.AST;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecursiveDescentParserTest {
+
+	private static final String[] VALID_INPUTS = {
+			"Width := 10px;\n#menu { width: Width * 2 + 5px - 1px; }",
+			"a { width: 1px - 2px + 3px * 4 - 5px; height: 50%; }",
+			".menu-item { if[TRUE] { color: #abcdef; if[Flag] { width: 1px; } } else { Local := FALSE; } }",
+			"#ff00001 { color: #00ff00; }",
+			"Is-Set := TRUE; Count := 3; ifx { width: Count; }",
+	};
+
+	private static final String[] BROKEN_INPUTS = {
+			"p { width: 10px\na { color: #ff0000; }",
+			"p { width: 10px; $ color: #ff0000; }\na { color: ; }",
+			"p { width: 1px + ; } ~ a { color: #000000; }",
+			"p { }",
+			"",
+	};
+
+	@Test
+	void testParseFixtures() throws IOException {
+		assertEquals(Fixtures.uncheckedLevel0(), parse(readResource("level0.icss")));
+		assertEquals(Fixtures.uncheckedLevel1(), parse(readResource("level1.icss")));
+		assertEquals(Fixtures.uncheckedLevel2(), parse(readResource("level2.icss")));
+		assertEquals(Fixtures.uncheckedLevel3(), parse(readResource("level3.icss")));
+	}
+
+	@Test
+	void testBuildsSameAstAsAntlr() throws IOException {
+		List<String> inputs = new ArrayList<>(List.of(VALID_INPUTS));
+		inputs.add(readResource("level3.icss"));
+		for (String input : inputs) {
+			List<String> errors = new ArrayList<>();
+			AST expected = new ParseContext().parse(CharStreams.fromString(input), collect(errors));
+			assertTrue(errors.isEmpty(), input);
+			AST actual = new RecursiveDescentParser().parse(input, collect(errors));
+			assertTrue(errors.isEmpty(), input);
+			assertEquals(expected, actual, input);
+			assertEquals(expected.toString(), actual.toString(), input);
+			assertEquals(Fixtures.positions(expected.root), Fixtures.positions(actual.root), input);
+		}
+	}
+
+	@Test
+	void testReportsErrorsWhereAntlrDoes() {
+		for (String input : BROKEN_INPUTS) {
+			List<String> errors = new ArrayList<>();
+			new RecursiveDescentParser().parse(input, collect(errors));
+			assertFalse(errors.isEmpty(), input);
+		}
+	}
+
+	@Test
+	void testScannerMatchesGeneratedLexer() {
+		String alphabet = "abefipxlsTRUEFALSEAZ09#.-_%:=;{}[]+* \n~";
+		Random random = new Random(42);
+		for (int round = 0; round < 2_000; round++) {
+			StringBuilder input = new StringBuilder();
+			int length = random.nextInt(30);
+			for (int i = 0; i < length; i++) {
+				input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			assertEquals(antlrTokens(input.toString()), scannerTokens(input.toString()), input.toString());
+		}
+	}
+
+	private List<String> antlrTokens(String input) {
+		List<String> tokens = new ArrayList<>();
+		ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(input));
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(collect(tokens));
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			tokens.add(token.getType() + " " + token.getText() + " " + token.getLine() + ":" + token.getCharPositionInLine());
+		}
+		return tokens;
+	}
+
+	private List<String> scannerTokens(String input) {
+		List<String> tokens = new ArrayList<>();
+		for (ICSSScanner scanner = new ICSSScanner(input, collect(tokens)); scanner.type() != Token.EOF; scanner.next()) {
+			tokens.add(scanner.type() + " " + scanner.text() + " " + scanner.line() + ":" + scanner.column());
+		}
+		return tokens;
+	}
+
+	private AST parse(String input) {
+		List<String> errors = new ArrayList<>();
+		AST ast = new RecursiveDescentParser().parse(input, collect(errors));
+		assertTrue(errors.isEmpty(), errors.toString());
+		return ast;
+	}
+
+	private String readResource(String resource) throws IOException {
+		try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(resource)) {
+			return CharStreams.fromStream(inputStream).toString();
+		}
+	}
+
+	private BaseErrorListener collect(List<String> errors) {
+		return new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+									int charPositionInLine, String msg, RecognitionException e) {
+				errors.add(line + ":" + charPositionInLine + " " + msg);
+			}
+		};
+	}
+}
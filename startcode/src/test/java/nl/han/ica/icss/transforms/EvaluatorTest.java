@@ -0,0 +1,108 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.parser.Fixtures;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluatorTest {
+
+	private static final List<Supplier<AST>> FIXTURES = List.of(Fixtures::uncheckedLevel0, Fixtures::uncheckedLevel1,
+			Fixtures::uncheckedLevel2, Fixtures::uncheckedLevel3);
+
+	@Test
+	void testTransformMatchesApplyAndKeepsInput() {
+		for (Supplier<AST> fixture : FIXTURES) {
+			AST applied = fixture.get();
+			new Evaluator().apply(applied);
+
+			AST input = fixture.get();
+			String before = input.toString();
+			AST transformed = new Evaluator().transform(input);
+
+			assertEquals(applied, transformed);
+			assertEquals(new Generator().generate(applied), new Generator().generate(transformed));
+			assertEquals(before, input.toString());
+			assertEquals(fixture.get(), input);
+		}
+	}
+
+	@Test
+	void testSharesUnchangedSubtrees() {
+		AST input = Fixtures.uncheckedLevel0();
+		AST transformed = new Evaluator().transform(input);
+		assertNotSame(input.root, transformed.root);
+		// Level 0 only has literals, every rule is shared
+		for (int i = 0; i < input.root.body.size(); i++) {
+			assertSame(input.root.body.get(i), transformed.root.body.get(i));
+		}
+
+		input = Fixtures.uncheckedLevel1();
+		transformed = new Evaluator().transform(input);
+		Stylerule original = (Stylerule) input.root.body.get(input.root.body.size() - 1);
+		Stylerule copy = (Stylerule) transformed.root.body.get(transformed.root.body.size() - 1);
+		assertSame(original.selectors.get(0), copy.selectors.get(0));
+		// Level 1 has no if clauses, so the declarations stay in place
+		for (int i = 0; i < copy.body.size(); i++) {
+			Declaration before = (Declaration) original.body.get(i);
+			Declaration after = (Declaration) copy.body.get(i);
+			assertSame(before.property, after.property);
+			assertEquals(before.expression instanceof Literal, before == after);
+		}
+	}
+
+	@Test
+	void testChangingSharedRuleChangesBothTrees() {
+		AST input = Fixtures.uncheckedLevel0();
+		AST transformed = new Evaluator().transform(input);
+		assertEquals(Fixtures.uncheckedLevel0(), input);
+		assertEquals(Fixtures.uncheckedLevel0(), transformed);
+
+		// The rule is in both trees, so both must see the change even though their hashes were cached
+		Stylerule shared = (Stylerule) input.root.body.get(0);
+		assertSame(shared, transformed.root.body.get(0));
+		shared.addChild(new Declaration("width").addChild(new PixelLiteral(7)));
+		assertNotEquals(Fixtures.uncheckedLevel0(), input);
+		assertNotEquals(Fixtures.uncheckedLevel0(), transformed);
+		assertEquals(input, transformed);
+
+		shared.body.remove(shared.body.size() - 1);
+		shared.invalidateHash();
+		assertEquals(Fixtures.uncheckedLevel0(), input);
+		assertEquals(Fixtures.uncheckedLevel0(), transformed);
+		assertEquals(Fixtures.uncheckedLevel0().toString(), input.toString());
+	}
+
+	@Test
+	void testTransformsOneTreeConcurrently() throws InterruptedException, ExecutionException {
+		AST input = Fixtures.uncheckedLevel3();
+		String expected = new Generator().generate(new Evaluator().transform(input));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				results.add(executor.submit(() -> new Generator().generate(new Evaluator().transform(input))));
+			}
+			for (Future<String> result : results) {
+				assertEquals(expected, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(Fixtures.uncheckedLevel3(), input);
+	}
+}